@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.harness;
+
+import com.google.gson.JsonObject;
+import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+import cd.go.artifact.redmine.utils.Digests;
+import cd.go.artifact.redmine.utils.Settings;
+
+/**
+ * The {@link ChaosHarness} publishes against a {@link ChaosRedmine} for each {@link ChaosRedmine.Fault}.
+ * A failed publish is re-run, as a job would be re-run on the GoCD server. After the publish, the
+ * files of the version are checked: each file has to be linked exactly once, with the size and
+ * digest of the local file. For each scenario the harness reports the time from the first fault to
+ * the successful publish and the bytes sent beyond the size of the files.
+ *
+ * <pre>
+ * --scenarios=...   comma separated faults, by default all
+ * --files=8         files per publish
+ * --sizes=512k,2m   comma separated file sizes, used round-robin
+ * --faults=0        number of injected faults, 0 uses the default of the scenario
+ * --reruns=2        re-runs of a failed publish
+ * </pre>
+ *
+ * The process exits with 1 if a scenario leaves a version with a duplicate, missing or corrupted
+ * file.
+ */
+public class ChaosHarness {
+
+  private static final long READ_TIMEOUT = 1000;
+
+  /**
+   * Runs the harness.
+   *
+   * @param args
+   */
+  public static void main(String[] args) throws Exception {
+    // The transport of the agent is created on the first publish
+    System.setProperty(Settings.READ_TIMEOUT, Long.toString(ChaosHarness.READ_TIMEOUT));
+    System.setProperty(Settings.RETRY_DELAY, "100");
+
+    Options options = new Options(args);
+    int files = options.getInt("files", 8);
+    long[] sizes = options.getSizes("sizes", "512k,2m");
+    int reruns = options.getInt("reruns", 2);
+    List<ChaosRedmine.Fault> faults = new ArrayList<>();
+    for (String name : options.get("scenarios", "reset,slow_loris,burst,malformed_token,dropped_link").split(",")) {
+      faults.add(ChaosRedmine.Fault.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+    }
+
+    Path root = Files.createTempDirectory(Paths.get(System.getProperty("java.io.tmpdir")), "redmine-chaos");
+    ConsoleLogger console = ConsoleLogger.getLogger(new HarnessAccessor());
+    boolean passed = true;
+    try {
+      System.out.printf("%-16s %6s %6s %12s %12s %10s  %s%n", "Scenario", "Faults", "Runs",
+          "Publish ms", "Recovery ms", "Re-sent", "Result");
+      for (ChaosRedmine.Fault fault : faults) {
+        int count = options.getInt("faults", 0) > 0 ? options.getInt("faults", 0) : ChaosHarness.getFaults(fault);
+        try (ChaosRedmine redmine = new ChaosRedmine(fault, count, ChaosHarness.READ_TIMEOUT * 3 / 2)) {
+          PublishJob job = new PublishJob(root.resolve(fault.name().toLowerCase(Locale.ROOT)), redmine.getUrl(), "chaos");
+          long bytes = job.createFiles(files, sizes);
+
+          long started = System.nanoTime();
+          GoPluginApiResponse response = null;
+          int runs = 0;
+          while (runs <= reruns && (response == null || response.responseCode() != 200)) {
+            response = job.publish("1", console);
+            runs++;
+          }
+          long finished = System.nanoTime();
+
+          List<String> errors = ChaosHarness.verify(job, redmine.getFiles("chaos"));
+          if (response.responseCode() != 200) {
+            errors.add(0, "publish failed: " + response.responseBody());
+          }
+          passed &= errors.isEmpty();
+
+          long recovery = redmine.getFirstFault() == 0 ? 0 : (finished - redmine.getFirstFault()) / 1000000;
+          System.out.printf("%-16s %6d %6d %12d %12d %10s  %s%n", fault, redmine.getInjected(), runs, (finished - started) / 1000000, recovery,
+              ChaosHarness.format(redmine.getBytesReceived() - bytes), errors.isEmpty() ? "PASS" : "FAIL");
+          for (String error : errors) {
+            System.out.printf("  %s%n", error);
+          }
+        }
+      }
+    } finally {
+      LoadHarness.delete(root);
+    }
+    System.exit(passed ? 0 : 1);
+  }
+
+  /**
+   * Gets the default number of faults of a scenario.
+   *
+   * @param fault
+   */
+  private static int getFaults(ChaosRedmine.Fault fault) {
+    switch (fault) {
+      case RESET:
+        return 2;
+      case BURST:
+        return 4;
+      default:
+        return 1;
+    }
+  }
+
+  /**
+   * Verifies the files of the version against the local files of the job.
+   *
+   * @param job
+   * @param files
+   */
+  private static List<String> verify(PublishJob job, List<JsonObject> files) throws IOException {
+    Map<String, JsonObject> linked = new HashMap<>();
+    List<String> errors = new ArrayList<>();
+    for (JsonObject file : files) {
+      if (linked.put(file.get("filename").getAsString(), file) != null) {
+        errors.add("duplicate " + file.get("filename").getAsString());
+      }
+    }
+
+    try (Stream<Path> paths = Files.list(job.getWorkingDir().resolve("files"))) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        JsonObject file = linked.remove(path.getFileName().toString());
+        if (file == null) {
+          errors.add("missing " + path.getFileName());
+        } else if (file.get("filesize").getAsLong() != Files.size(path)
+            || !file.get("digest").getAsString().equals(Digests.compute(path, Digests.SHA256))) {
+          errors.add("corrupted " + path.getFileName());
+        }
+      }
+    }
+    linked.keySet().forEach(name -> errors.add("unexpected " + name));
+    return errors;
+  }
+
+  /**
+   * Formats a number of bytes.
+   *
+   * @param bytes
+   */
+  private static String format(long bytes) {
+    return String.format("%.1f MB", bytes / 1048576.0);
+  }
+}
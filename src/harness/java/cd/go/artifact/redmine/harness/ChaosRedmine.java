@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link ChaosRedmine} is a {@link FakeRedmine} that injects a {@link Fault} into the first
+ * requests it applies to.
+ */
+public class ChaosRedmine extends FakeRedmine {
+
+  /**
+   * The faults that can be injected.
+   */
+  public enum Fault {
+
+    /** The connection is closed while the upload is sent. */
+    RESET,
+    /** The response of an upload trickles in slower than the read timeout of the agent. */
+    SLOW_LORIS,
+    /** Requests fail with alternating 502 and 503 responses. */
+    BURST,
+    /** An upload returns an empty or truncated token. */
+    MALFORMED_TOKEN,
+    /** A link is done, but the connection is closed before the response is sent. */
+    DROPPED_LINK
+  }
+
+  private final Fault         fault;
+  private final AtomicInteger remaining;
+  private final AtomicInteger injected   = new AtomicInteger();
+  private final AtomicLong    firstFault = new AtomicLong();
+  private final long          trickleMillis;
+
+  /**
+   * Constructs an instance of {@link ChaosRedmine}.
+   *
+   * @param fault
+   * @param count
+   * @param trickleMillis
+   */
+  public ChaosRedmine(Fault fault, int count, long trickleMillis) throws IOException {
+    this.fault = fault;
+    this.remaining = new AtomicInteger(count);
+    this.trickleMillis = trickleMillis;
+  }
+
+  /**
+   * Gets the {@link System#nanoTime()} of the first injected fault, or 0.
+   */
+  public final long getFirstFault() {
+    return firstFault.get();
+  }
+
+  /**
+   * Gets the number of injected faults.
+   */
+  public final int getInjected() {
+    return injected.get();
+  }
+
+  /**
+   * Injects the 502 and 503 responses of a burst.
+   */
+  @Override
+  protected int getInjectedStatus() {
+    if (fault == Fault.BURST && inject()) {
+      return (remaining.get() % 2 == 0) ? 502 : 503;
+    }
+    return super.getInjectedStatus();
+  }
+
+  /**
+   * Injects the faults of an upload.
+   *
+   * @param exchange
+   */
+  @Override
+  protected void upload(HttpExchange exchange) throws IOException, InterruptedException {
+    if (fault == Fault.RESET && inject()) {
+      long length = Long.parseLong(exchange.getRequestHeaders().getFirst("Content-Length"));
+      drain(exchange.getRequestBody(), null, length / 2);
+      throw new IOException("Injected connection reset");
+    } else if (fault == Fault.SLOW_LORIS && inject()) {
+      byte[] body = String.format("{\"upload\":{\"token\":\"%s\"}}", receive(exchange)).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(201, body.length);
+      OutputStream output = exchange.getResponseBody();
+      for (byte value : body) {
+        FakeRedmine.sleep(trickleMillis);
+        output.write(value);
+        output.flush();
+      }
+      output.close();
+    } else if (fault == Fault.MALFORMED_TOKEN && inject()) {
+      receive(exchange);
+      send(exchange, 201, (remaining.get() % 2 == 0) ? "{\"upload\":{\"token\":\"\"}}" : "{\"upload\":{\"tok");
+    } else {
+      super.upload(exchange);
+    }
+  }
+
+  /**
+   * Injects a dropped link: the file is linked, but no response is sent.
+   *
+   * @param exchange
+   * @param projectId
+   */
+  @Override
+  protected void link(HttpExchange exchange, String projectId) throws IOException, InterruptedException {
+    if (fault == Fault.DROPPED_LINK && inject()) {
+      addFile(projectId, parse(exchange.getRequestBody()).getAsJsonObject("file"));
+      throw new IOException("Injected dropped link");
+    }
+    super.link(exchange, projectId);
+  }
+
+  /**
+   * Returns <code>true</code> if the fault should be injected into the current request.
+   */
+  private boolean inject() {
+    if (remaining.getAndDecrement() <= 0) {
+      return false;
+    }
+    injected.incrementAndGet();
+    firstFault.compareAndSet(0, System.nanoTime());
+    return true;
+  }
+}
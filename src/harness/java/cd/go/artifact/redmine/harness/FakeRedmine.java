@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.harness;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import cd.go.artifact.redmine.utils.Digests;
+
+/**
+ * The {@link FakeRedmine} is an in-process stand-in for the Redmine API used by the plugin:
+ *
+ * <ul>
+ * <li><code>POST /uploads.json</code> consumes the body and returns an upload token.</li>
+ * <li><code>POST /projects/{id}/files.json</code> links an upload to a version.</li>
+ * <li><code>GET /projects/{id}/files.json</code> lists the files with their SHA-256 digest.</li>
+ * <li><code>GET /attachments/download/{id}/{filename}</code> sends the content of a file, or a
+ * single <code>Range</code> of it.</li>
+ * </ul>
+ *
+ * The uploaded content is spooled to a temporary directory, that is deleted on close. Each request
+ * is delayed by the latency, request and response bodies are transferred with the bandwidth cap of
+ * a single connection, and requests fail with a <code>503</code> at the error rate.
+ */
+public class FakeRedmine implements AutoCloseable {
+
+  private static final Pattern FILES    = Pattern.compile("^/projects/([^/]+)/files\\.json$");
+  private static final Pattern DOWNLOAD = Pattern.compile("^/attachments/download/(\\d+)/[^/]+$");
+  private static final Pattern RANGE    = Pattern.compile("^bytes=(\\d+)-(\\d+)$");
+
+  private final HttpServer      server;
+  private final ExecutorService executor;
+  private final Path            storage;
+
+  private final Map<String, Upload>          uploads  = new ConcurrentHashMap<>();
+  private final Map<String, List<JsonObject>> projects = new ConcurrentHashMap<>();
+
+  private final AtomicInteger ids           = new AtomicInteger();
+  private final AtomicLong    bytesReceived = new AtomicLong();
+  private final AtomicLong    bytesSent     = new AtomicLong();
+  private final AtomicLong    requests      = new AtomicLong();
+  private final AtomicLong    errors        = new AtomicLong();
+
+  private volatile long    latencyMillis;
+  private volatile long    bandwidth;
+  private volatile double  errorRate;
+  private volatile boolean ranges = true;
+
+  /**
+   * Constructs an instance of {@link FakeRedmine} on a free local port.
+   */
+  public FakeRedmine() throws IOException {
+    this.storage = Files.createTempDirectory("fake-redmine");
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "fake-redmine");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.server.setExecutor(executor);
+    this.server.createContext("/", this::handle);
+    this.server.start();
+  }
+
+  /**
+   * Gets the base URL of the server.
+   */
+  public final String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * Sets the latency added to each request.
+   *
+   * @param latencyMillis
+   */
+  public final void setLatencyMillis(long latencyMillis) {
+    this.latencyMillis = latencyMillis;
+  }
+
+  /**
+   * Sets the bandwidth of a single connection in bytes per second, 0 is unlimited.
+   *
+   * @param bandwidth
+   */
+  public final void setBandwidth(long bandwidth) {
+    this.bandwidth = bandwidth;
+  }
+
+  /**
+   * Sets the ratio of requests that fail with a <code>503</code>.
+   *
+   * @param errorRate
+   */
+  public final void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Enables the support of <code>Range</code> requests, otherwise the whole file is sent.
+   *
+   * @param ranges
+   */
+  public final void setRanges(boolean ranges) {
+    this.ranges = ranges;
+  }
+
+  /**
+   * Gets the number of request body bytes received.
+   */
+  public final long getBytesReceived() {
+    return bytesReceived.get();
+  }
+
+  /**
+   * Gets the number of response body bytes sent.
+   */
+  public final long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  /**
+   * Gets the number of requests.
+   */
+  public final long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * Gets the number of injected errors.
+   */
+  public final long getErrors() {
+    return errors.get();
+  }
+
+  /**
+   * Gets the files of a project, as listed by the API.
+   *
+   * @param projectId
+   */
+  public final List<JsonObject> getFiles(String projectId) {
+    List<JsonObject> files = projects.get(projectId);
+    if (files == null) {
+      return new ArrayList<>();
+    }
+    synchronized (files) {
+      return new ArrayList<>(files);
+    }
+  }
+
+  /**
+   * Stops the server.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+    LoadHarness.delete(storage);
+  }
+
+  /**
+   * Handles a request.
+   *
+   * @param exchange
+   */
+  protected void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    try {
+      sleep(latencyMillis);
+      int status = getInjectedStatus();
+      if (status > 0) {
+        errors.incrementAndGet();
+        drain(exchange.getRequestBody(), null);
+        send(exchange, status, "{\"errors\":[\"Injected error\"]}");
+        return;
+      }
+
+      String path = exchange.getRequestURI().getPath();
+      Matcher matcher = FakeRedmine.FILES.matcher(path);
+      Matcher download = FakeRedmine.DOWNLOAD.matcher(path);
+      if ("POST".equals(exchange.getRequestMethod()) && "/uploads.json".equals(path)) {
+        upload(exchange);
+      } else if ("POST".equals(exchange.getRequestMethod()) && matcher.matches()) {
+        link(exchange, matcher.group(1));
+      } else if ("GET".equals(exchange.getRequestMethod()) && matcher.matches()) {
+        list(exchange, matcher.group(1));
+      } else if ("GET".equals(exchange.getRequestMethod()) && download.matches()) {
+        download(exchange, download.group(1));
+      } else {
+        send(exchange, 404, "{\"errors\":[\"Not found\"]}");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Gets the status of an injected error for the current request, or 0 to handle the request.
+   */
+  protected int getInjectedStatus() {
+    return (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) ? 503 : 0;
+  }
+
+  /**
+   * Consumes an upload and returns its token.
+   *
+   * @param exchange
+   */
+  protected void upload(HttpExchange exchange) throws IOException, InterruptedException {
+    send(exchange, 201, String.format("{\"upload\":{\"token\":\"%s\"}}", receive(exchange)));
+  }
+
+  /**
+   * Reads the request body of an upload and returns the token of the upload.
+   *
+   * @param exchange
+   */
+  protected final String receive(HttpExchange exchange) throws IOException, InterruptedException {
+    MessageDigest digest = Digests.create(Digests.SHA256);
+    Path content = Files.createTempFile(storage, "upload", ".bin");
+    long size;
+    try (OutputStream output = Files.newOutputStream(content)) {
+      size = drain(exchange.getRequestBody(), digest, Long.MAX_VALUE, output);
+    }
+    String sha256 = Digests.toHex(digest.digest());
+    String token = ids.incrementAndGet() + "." + sha256;
+    uploads.put(token, new Upload(size, sha256, content));
+    return token;
+  }
+
+  /**
+   * Links an upload to a version.
+   *
+   * @param exchange
+   * @param projectId
+   */
+  protected void link(HttpExchange exchange, String projectId) throws IOException, InterruptedException {
+    if (addFile(projectId, parse(exchange.getRequestBody()).getAsJsonObject("file"))) {
+      send(exchange, 204, null);
+    } else {
+      send(exchange, 422, "{\"errors\":[\"Token is invalid\"]}");
+    }
+  }
+
+  /**
+   * Adds the upload of the token to the files of the project. Returns <code>false</code> if the
+   * token is unknown.
+   *
+   * @param projectId
+   * @param file
+   */
+  protected final boolean addFile(String projectId, JsonObject file) {
+    Upload upload = (file == null || !file.has("token")) ? null : uploads.remove(file.get("token").getAsString());
+    if (upload == null) {
+      return false;
+    }
+
+    int id = ids.incrementAndGet();
+    try {
+      Files.move(upload.content, storage.resolve(Integer.toString(id)));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    String filename = file.get("filename").getAsString();
+    JsonObject version = new JsonObject();
+    version.addProperty("id", file.get("version_id").getAsString());
+    JsonObject entry = new JsonObject();
+    entry.addProperty("id", id);
+    entry.addProperty("filename", filename);
+    entry.addProperty("filesize", upload.size);
+    entry.addProperty("content_url", String.format("%s/attachments/download/%d/%s", getUrl(), id, filename));
+    entry.addProperty("digest", upload.digest);
+    entry.add("version", version);
+
+    List<JsonObject> files = projects.computeIfAbsent(projectId, key -> new ArrayList<>());
+    synchronized (files) {
+      files.add(entry);
+    }
+    return true;
+  }
+
+  /**
+   * Lists the files of a project.
+   *
+   * @param exchange
+   * @param projectId
+   */
+  protected void list(HttpExchange exchange, String projectId) throws IOException {
+    JsonArray files = new JsonArray();
+    getFiles(projectId).forEach(files::add);
+    JsonObject json = new JsonObject();
+    json.add("files", files);
+    send(exchange, 200, json.toString());
+  }
+
+  /**
+   * Sends the content of a file, or the requested range of it, with the bandwidth cap.
+   *
+   * @param exchange
+   * @param id
+   */
+  protected void download(HttpExchange exchange, String id) throws IOException, InterruptedException {
+    Path content = storage.resolve(id);
+    if (!Files.exists(content)) {
+      send(exchange, 404, "{\"errors\":[\"Not found\"]}");
+      return;
+    }
+
+    long total = Files.size(content);
+    long start = 0;
+    long length = total;
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    Matcher matcher = (range == null || !ranges) ? null : FakeRedmine.RANGE.matcher(range);
+    exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+    if (matcher != null && matcher.matches()) {
+      start = Long.parseLong(matcher.group(1));
+      length = Math.min(total - 1, Long.parseLong(matcher.group(2))) - start + 1;
+      exchange.getResponseHeaders().set("Content-Range",
+          String.format("bytes %d-%d/%d", start, start + length - 1, total));
+      exchange.sendResponseHeaders(206, length);
+    } else {
+      exchange.sendResponseHeaders(200, length);
+    }
+
+    byte[] buffer = new byte[65536];
+    long started = System.nanoTime();
+    long size = 0;
+    try (InputStream input = Files.newInputStream(content); OutputStream output = exchange.getResponseBody()) {
+      input.skip(start);
+      for (int count = input.read(buffer, 0, (int) Math.min(buffer.length, length)); count > 0;
+          count = input.read(buffer, 0, (int) Math.min(buffer.length, length - size))) {
+        output.write(buffer, 0, count);
+        size += count;
+        bytesSent.addAndGet(count);
+        throttle(started, size);
+      }
+    }
+  }
+
+  /**
+   * Reads a JSON request body.
+   *
+   * @param input
+   */
+  protected final JsonObject parse(InputStream input) throws IOException {
+    try (InputStreamReader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
+      return new JsonParser().parse(reader).getAsJsonObject();
+    }
+  }
+
+  /**
+   * Reads the request body with the bandwidth cap and returns its size.
+   *
+   * @param input
+   * @param digest
+   */
+  protected final long drain(InputStream input, MessageDigest digest) throws IOException, InterruptedException {
+    return drain(input, digest, Long.MAX_VALUE);
+  }
+
+  /**
+   * Reads up to the limit of the request body with the bandwidth cap and returns the bytes read.
+   *
+   * @param input
+   * @param digest
+   * @param limit
+   */
+  protected final long drain(InputStream input, MessageDigest digest, long limit)
+      throws IOException, InterruptedException {
+    return drain(input, digest, limit, null);
+  }
+
+  /**
+   * Reads up to the limit of the request body with the bandwidth cap and returns the bytes read. The
+   * bytes are copied to the output, without output they are discarded.
+   *
+   * @param input
+   * @param digest
+   * @param limit
+   * @param output
+   */
+  protected final long drain(InputStream input, MessageDigest digest, long limit, OutputStream output)
+      throws IOException, InterruptedException {
+    byte[] buffer = new byte[65536];
+    long started = System.nanoTime();
+    long size = 0;
+    for (int length = input.read(buffer, 0, (int) Math.min(buffer.length, limit)); length > 0;
+        length = input.read(buffer, 0, (int) Math.min(buffer.length, limit - size))) {
+      size += length;
+      bytesReceived.addAndGet(length);
+      if (digest != null) {
+        digest.update(buffer, 0, length);
+      }
+      if (output != null) {
+        output.write(buffer, 0, length);
+      }
+      throttle(started, size);
+    }
+    return size;
+  }
+
+  /**
+   * Waits until the transfer of the bytes since the start fits the bandwidth cap.
+   *
+   * @param started
+   * @param size
+   */
+  private void throttle(long started, long size) throws InterruptedException {
+    if (bandwidth > 0) {
+      long expected = size * 1000 / bandwidth;
+      sleep(expected - (System.nanoTime() - started) / 1000000);
+    }
+  }
+
+  /**
+   * Sends a response, without body if the body is <code>null</code>.
+   *
+   * @param exchange
+   * @param status
+   * @param body
+   */
+  protected final void send(HttpExchange exchange, int status, String body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  /**
+   * Sleeps for the given time, if positive.
+   *
+   * @param millis
+   */
+  protected static void sleep(long millis) throws InterruptedException {
+    if (millis > 0) {
+      Thread.sleep(millis);
+    }
+  }
+
+  /**
+   * The {@link Upload} is a received file, waiting to be linked.
+   */
+  private static class Upload {
+
+    private final long   size;
+    private final String digest;
+    private final Path   content;
+
+    /**
+     * Constructs an instance of {@link Upload}.
+     *
+     * @param size
+     * @param digest
+     * @param content
+     */
+    private Upload(long size, String digest, Path content) {
+      this.size = size;
+      this.digest = digest;
+      this.content = content;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.harness;
+
+import com.thoughtworks.go.plugin.api.GoApplicationAccessor;
+import com.thoughtworks.go.plugin.api.request.GoApiRequest;
+import com.thoughtworks.go.plugin.api.response.DefaultGoApiResponse;
+import com.thoughtworks.go.plugin.api.response.GoApiResponse;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link HarnessAccessor} stands in for the GoCD server, it accepts and counts the console log
+ * requests of the plugin.
+ */
+public class HarnessAccessor extends GoApplicationAccessor {
+
+  private final AtomicLong requests = new AtomicLong();
+
+  /**
+   * Gets the number of submitted requests.
+   */
+  public final long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * Accepts the request.
+   *
+   * @param request
+   */
+  @Override
+  public GoApiResponse submit(GoApiRequest request) {
+    requests.incrementAndGet();
+    return DefaultGoApiResponse.success(null);
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.harness;
+
+import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+import cd.go.artifact.redmine.utils.Settings;
+
+/**
+ * The {@link LoadHarness} publishes with N concurrent jobs of M files each against a
+ * {@link FakeRedmine} and reports the publish latency percentiles, the aggregate throughput and the
+ * heap high-water mark of the JVM. The fake server runs in the same JVM and spools the uploads to
+ * disk. Optionally each job fetches its last publish back and verifies the content.
+ *
+ * <pre>
+ * --jobs=4          concurrent jobs per round
+ * --rounds=3        rounds, each round publishes to new versions
+ * --files=10        files per job
+ * --sizes=1m        comma separated file sizes, used round-robin
+ * --latency-ms=20   latency of each Redmine request
+ * --bandwidth=0     bandwidth of a single connection, e.g. 10m (bytes per second), 0 is unlimited
+ * --error-rate=0    ratio of Redmine requests failing with a 503
+ * --dir=...         directory for the working directories of the jobs
+ * --fetch=false     fetch the last publish of each job concurrently, after all rounds
+ * </pre>
+ */
+public class LoadHarness {
+
+  /**
+   * Runs the harness.
+   *
+   * @param args
+   */
+  public static void main(String[] args) throws Exception {
+    Options options = new Options(args);
+    int jobs = options.getInt("jobs", 4);
+    int rounds = options.getInt("rounds", 3);
+    int files = options.getInt("files", 10);
+    long[] sizes = options.getSizes("sizes", "1m");
+
+    Path root = Files.createTempDirectory(Paths.get(options.get("dir", System.getProperty("java.io.tmpdir"))),
+        "redmine-load");
+    HarnessAccessor accessor = new HarnessAccessor();
+    ConsoleLogger console = ConsoleLogger.getLogger(accessor);
+    try (FakeRedmine redmine = new FakeRedmine()) {
+      redmine.setLatencyMillis(options.getInt("latency-ms", 20));
+      redmine.setBandwidth(Options.parseSize(options.get("bandwidth", "0")));
+      redmine.setErrorRate(options.getDouble("error-rate", 0));
+
+      List<PublishJob> publishJobs = new ArrayList<>();
+      long bytesPerRound = 0;
+      for (int job = 0; job < jobs; job++) {
+        PublishJob publishJob = new PublishJob(root.resolve("job-" + job), redmine.getUrl(), "harness");
+        bytesPerRound += publishJob.createFiles(files, sizes);
+        publishJobs.add(publishJob);
+      }
+
+      System.out.printf("Publishing %d round(s) of %d job(s) x %d file(s), %.1f MB per round to %s%n", rounds,
+          jobs, files, bytesPerRound / 1048576.0, redmine.getUrl());
+      ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+
+      long[] latencies = new long[jobs * rounds];
+      String[] published = new String[jobs];
+      int failures = 0;
+      long started = System.nanoTime();
+      ExecutorService executor = Executors.newFixedThreadPool(jobs);
+      try {
+        for (int round = 0; round < rounds; round++) {
+          CountDownLatch start = new CountDownLatch(1);
+          List<Future<GoPluginApiResponse>> results = new ArrayList<>();
+          for (int job = 0; job < jobs; job++) {
+            PublishJob publishJob = publishJobs.get(job);
+            String versionId = Integer.toString(round * jobs + job + 1);
+            int index = round * jobs + job;
+            results.add(executor.submit(() -> {
+              start.await();
+              long begin = System.nanoTime();
+              try {
+                return publishJob.publish(versionId, console);
+              } finally {
+                latencies[index] = System.nanoTime() - begin;
+              }
+            }));
+          }
+          start.countDown();
+          for (int job = 0; job < jobs; job++) {
+            GoPluginApiResponse response = results.get(job).get();
+            published[job] = (response.responseCode() == 200) ? response.responseBody() : null;
+            if (response.responseCode() != 200) {
+              failures++;
+              System.out.printf("Publish failed: %s%n", response.responseBody());
+            }
+          }
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+      long elapsed = System.nanoTime() - started;
+
+      Arrays.sort(latencies);
+      System.out.printf("Publishes:  %d, %d failed%n", latencies.length, failures);
+      System.out.printf("Latency:    p50 %d ms, p95 %d ms, p99 %d ms, max %d ms%n", percentile(latencies, 50),
+          percentile(latencies, 95), percentile(latencies, 99), latencies[latencies.length - 1] / 1000000);
+      System.out.printf("Throughput: %.1f MB/s (%.1f MB in %.1f s)%n",
+          bytesPerRound * rounds / 1048576.0 / (elapsed / 1e9), bytesPerRound * rounds / 1048576.0, elapsed / 1e9);
+      System.out.printf("Redmine:    %d requests, %d injected errors, %.1f MB received%n", redmine.getRequests(),
+          redmine.getErrors(), redmine.getBytesReceived() / 1048576.0);
+      System.out.printf("Heap:       %.1f MB high-water mark%n", getHeapHighWaterMark() / 1048576.0);
+      System.out.printf("Console:    %d log requests%n", accessor.getRequests());
+
+      if (Boolean.parseBoolean(options.get("fetch", "false"))) {
+        if (System.getProperty(Settings.CACHE_DIR) == null) {
+          System.setProperty(Settings.CACHE_DIR, root.resolve("cache").toString());
+        }
+        // The second fetch is served by the artifact cache of the agent
+        fetch(publishJobs, (rounds - 1) * jobs, published, root.resolve("fetch-cold"), redmine, console);
+        fetch(publishJobs, (rounds - 1) * jobs, published, root.resolve("fetch-warm"), redmine, console);
+      }
+    } finally {
+      LoadHarness.delete(root);
+    }
+  }
+
+  /**
+   * Fetches the last publish of each job concurrently into the root, verifies the fetched files
+   * against the published files and reports the fetch latency and throughput.
+   *
+   * @param publishJobs
+   * @param versionOffset
+   * @param published
+   * @param root
+   * @param redmine
+   * @param console
+   */
+  private static void fetch(List<PublishJob> publishJobs, int versionOffset, String[] published, Path root,
+      FakeRedmine redmine, ConsoleLogger console) throws Exception {
+    int jobs = publishJobs.size();
+    long[] latencies = new long[jobs];
+    long sent = redmine.getBytesSent();
+    long started = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(jobs);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int job = 0; job < jobs; job++) {
+        PublishJob publishJob = publishJobs.get(job);
+        String versionId = Integer.toString(versionOffset + job + 1);
+        String metadata = published[job];
+        Path directory = root.resolve("job-" + job);
+        int index = job;
+        results.add(executor.submit(() -> {
+          if (metadata == null) {
+            return "not published";
+          }
+          long begin = System.nanoTime();
+          GoPluginApiResponse response = publishJob.fetch(versionId, metadata, directory, console);
+          latencies[index] = System.nanoTime() - begin;
+          return (response.responseCode() == 200) ? verify(publishJob.getWorkingDir().resolve("files"), directory)
+              : response.responseBody();
+        }));
+      }
+
+      int failures = 0;
+      for (Future<String> result : results) {
+        String error = result.get();
+        if (error != null) {
+          failures++;
+          System.out.printf("Fetch failed: %s%n", error);
+        }
+      }
+      long elapsed = System.nanoTime() - started;
+      long bytes = redmine.getBytesSent() - sent;
+
+      Arrays.sort(latencies);
+      System.out.printf("Fetches:    %d, %d failed, into %s%n", jobs, failures, root.getFileName());
+      System.out.printf("Latency:    p50 %d ms, p95 %d ms, p99 %d ms, max %d ms%n", percentile(latencies, 50),
+          percentile(latencies, 95), percentile(latencies, 99), latencies[latencies.length - 1] / 1000000);
+      System.out.printf("Throughput: %.1f MB/s (%.1f MB in %.1f s)%n", bytes / 1048576.0 / (elapsed / 1e9),
+          bytes / 1048576.0, elapsed / 1e9);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Verifies that each published file has been fetched with the same content. Returns the error or
+   * <code>null</code>.
+   *
+   * @param published
+   * @param fetched
+   */
+  private static String verify(Path published, Path fetched) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(published)) {
+      for (Path file : files) {
+        Path copy = fetched.resolve(file.getFileName().toString());
+        if (!FileUtils.contentEquals(file.toFile(), copy.toFile())) {
+          return String.format("%s differs from the published file", copy);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets the percentile of the sorted latencies in milliseconds.
+   *
+   * @param latencies
+   * @param percentile
+   */
+  static long percentile(long[] latencies, int percentile) {
+    int index = (int) Math.ceil(percentile / 100.0 * latencies.length) - 1;
+    return latencies[Math.max(0, index)] / 1000000;
+  }
+
+  /**
+   * Gets the high-water mark of the heap, as sum of the peak usage of the heap pools since the last
+   * reset.
+   */
+  static long getHeapHighWaterMark() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * Deletes the working directories.
+   *
+   * @param root
+   */
+  static void delete(Path root) {
+    try {
+      FileUtils.deleteDirectory(root.toFile());
+    } catch (IOException e) {
+      System.out.printf("Couldn't delete %s: %s%n", root, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.harness;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@link Options} are the command line options of a harness, given as
+ * <code>--name=value</code>. Sizes accept the suffixes <code>k</code>, <code>m</code> and
+ * <code>g</code>.
+ */
+class Options {
+
+  private final Map<String, String> values = new HashMap<>();
+
+  /**
+   * Constructs an instance of {@link Options}.
+   *
+   * @param args
+   */
+  Options(String... args) {
+    for (String arg : args) {
+      if (!arg.startsWith("--")) {
+        throw new IllegalArgumentException("Invalid option: " + arg);
+      }
+      int index = arg.indexOf('=');
+      if (index < 0) {
+        values.put(arg.substring(2), "true");
+      } else {
+        values.put(arg.substring(2, index), arg.substring(index + 1));
+      }
+    }
+  }
+
+  /**
+   * Gets an option as string.
+   *
+   * @param name
+   * @param defaultValue
+   */
+  final String get(String name, String defaultValue) {
+    return values.getOrDefault(name, defaultValue);
+  }
+
+  /**
+   * Gets an option as integer.
+   *
+   * @param name
+   * @param defaultValue
+   */
+  final int getInt(String name, int defaultValue) {
+    return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+  }
+
+  /**
+   * Gets an option as double.
+   *
+   * @param name
+   * @param defaultValue
+   */
+  final double getDouble(String name, double defaultValue) {
+    return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+  }
+
+  /**
+   * Gets an option as comma separated list of sizes.
+   *
+   * @param name
+   * @param defaultValue
+   */
+  final long[] getSizes(String name, String defaultValue) {
+    String[] items = get(name, defaultValue).split(",");
+    long[] sizes = new long[items.length];
+    for (int index = 0; index < items.length; index++) {
+      sizes[index] = Options.parseSize(items[index]);
+    }
+    return sizes;
+  }
+
+  /**
+   * Parses a size like <code>64k</code> or <code>10m</code>.
+   *
+   * @param size
+   */
+  static long parseSize(String size) {
+    String text = size.trim().toLowerCase(Locale.ROOT);
+    long unit = 1;
+    switch (text.isEmpty() ? ' ' : text.charAt(text.length() - 1)) {
+      case 'k':
+        unit = 1024;
+        break;
+      case 'm':
+        unit = 1024 * 1024;
+        break;
+      case 'g':
+        unit = 1024 * 1024 * 1024;
+        break;
+      default:
+        return Long.parseLong(text);
+    }
+    return Long.parseLong(text.substring(0, text.length() - 1)) * unit;
+  }
+}
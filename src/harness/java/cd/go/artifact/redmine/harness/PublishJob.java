@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.harness;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.thoughtworks.go.plugin.api.request.DefaultGoPluginApiRequest;
+import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+import cd.go.artifact.redmine.Request;
+import cd.go.artifact.redmine.executors.FetchArtifactExecutor;
+import cd.go.artifact.redmine.executors.PublishArtifactExecutor;
+
+/**
+ * The {@link PublishJob} is a single job of a pipeline, that publishes the files of its working
+ * directory with the {@link PublishArtifactExecutor}. A downstream job fetches the published files
+ * with the {@link FetchArtifactExecutor}.
+ */
+public class PublishJob {
+
+  private final Path   workingDir;
+  private final String url;
+  private final String projectId;
+
+  /**
+   * Constructs an instance of {@link PublishJob}.
+   *
+   * @param workingDir
+   * @param url
+   * @param projectId
+   */
+  public PublishJob(Path workingDir, String url, String projectId) {
+    this.workingDir = workingDir;
+    this.url = url;
+    this.projectId = projectId;
+  }
+
+  /**
+   * Gets the working directory.
+   */
+  public final Path getWorkingDir() {
+    return workingDir;
+  }
+
+  /**
+   * Creates the files of the job with random content and returns the total number of bytes.
+   *
+   * @param files
+   * @param sizes
+   */
+  public final long createFiles(int files, long[] sizes) throws IOException {
+    Path directory = Files.createDirectories(workingDir.resolve("files"));
+    byte[] buffer = new byte[65536];
+    long total = 0;
+    for (int index = 0; index < files; index++) {
+      long size = sizes[index % sizes.length];
+      try (OutputStream output = Files.newOutputStream(directory.resolve(String.format("file-%04d.bin", index)))) {
+        for (long remaining = size; remaining > 0; remaining -= buffer.length) {
+          ThreadLocalRandom.current().nextBytes(buffer);
+          output.write(buffer, 0, (int) Math.min(buffer.length, remaining));
+        }
+      }
+      total += size;
+    }
+    return total;
+  }
+
+  /**
+   * Publishes all files of the job to the version.
+   *
+   * @param versionId
+   * @param console
+   */
+  public final GoPluginApiResponse publish(String versionId, ConsoleLogger console) {
+    JsonObject body = new JsonObject();
+    JsonObject plan = new JsonObject();
+    plan.addProperty("Source", "files/(.%)\\.bin");
+    plan.addProperty("Destination", "$1.bin");
+    JsonObject artifactPlan = new JsonObject();
+    artifactPlan.addProperty("id", "harness");
+    artifactPlan.addProperty("storeId", "redmine");
+    artifactPlan.add("configuration", plan);
+
+    JsonObject artifactStore = new JsonObject();
+    artifactStore.addProperty("id", "redmine");
+    artifactStore.add("configuration", getStore(versionId));
+
+    body.add("artifact_plan", artifactPlan);
+    body.add("artifact_store", artifactStore);
+    body.add("environment_variables", new JsonObject());
+    body.addProperty("agent_working_directory", workingDir.toString());
+
+    DefaultGoPluginApiRequest request =
+        new DefaultGoPluginApiRequest("artifact", "2.0", Request.REQUEST_PUBLISH_ARTIFACT.requestName());
+    request.setRequestBody(body.toString());
+    return new PublishArtifactExecutor(request, console).execute();
+  }
+
+  /**
+   * Fetches the files of a publish into the directory, with the metadata of the publish response.
+   *
+   * @param versionId
+   * @param publishResponse
+   * @param directory
+   * @param console
+   */
+  public final GoPluginApiResponse fetch(String versionId, String publishResponse, Path directory,
+      ConsoleLogger console) {
+    JsonObject body = new JsonObject();
+    body.add("store_configuration", getStore(versionId));
+    body.add("fetch_artifact_configuration", new JsonObject());
+    body.add("artifact_metadata", new JsonParser().parse(publishResponse).getAsJsonObject().get("metadata"));
+    body.addProperty("agent_working_directory", directory.toString());
+
+    DefaultGoPluginApiRequest request =
+        new DefaultGoPluginApiRequest("artifact", "2.0", Request.REQUEST_FETCH_ARTIFACT.requestName());
+    request.setRequestBody(body.toString());
+    return new FetchArtifactExecutor(request, console).execute();
+  }
+
+  /**
+   * Gets the configuration of the artifact store for the version.
+   *
+   * @param versionId
+   */
+  private JsonObject getStore(String versionId) {
+    JsonObject store = new JsonObject();
+    store.addProperty("URL", url);
+    store.addProperty("KEY", "harness");
+    store.addProperty("Project", projectId);
+    store.addProperty("Version", versionId);
+    return store;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine;
+
+import com.thoughtworks.go.plugin.api.request.DefaultGoPluginApiRequest;
+import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import cd.go.artifact.redmine.utils.Util;
+
+/**
+ * The {@link RequestBenchmark} measures {@link RedmineArtifactPlugin#handle} in-process, from
+ * decoding the recorded request to encoding the response. The requests
+ * {@link Request#REQUEST_PUBLISH_ARTIFACT} and {@link Request#REQUEST_FETCH_ARTIFACT} talk to
+ * Redmine, their decoding and encoding is measured by the
+ * {@link cd.go.artifact.redmine.model.PayloadBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestBenchmark {
+
+  @Param({"REQUEST_GET_PLUGIN_ICON", "REQUEST_GET_PLUGIN_CAPABILITIES", "REQUEST_STORE_CONFIG_METADATA",
+      "REQUEST_STORE_CONFIG_VIEW", "REQUEST_STORE_CONFIG_VALIDATE", "REQUEST_PUBLISH_ARTIFACT_METADATA",
+      "REQUEST_PUBLISH_ARTIFACT_VIEW", "REQUEST_PUBLISH_ARTIFACT_VALIDATE", "REQUEST_FETCH_ARTIFACT_METADATA",
+      "REQUEST_FETCH_ARTIFACT_VIEW", "REQUEST_FETCH_ARTIFACT_VALIDATE"})
+  private Request request;
+
+  private RedmineArtifactPlugin     plugin;
+  private DefaultGoPluginApiRequest apiRequest;
+
+  /**
+   * Creates the plugin and the recorded request.
+   */
+  @Setup
+  public void setup() {
+    plugin = new RedmineArtifactPlugin();
+    apiRequest = new DefaultGoPluginApiRequest("artifact", "2.0", request.requestName());
+    switch (request) {
+      case REQUEST_STORE_CONFIG_VALIDATE:
+        apiRequest.setRequestBody(Util.readResource("/payloads/store-validate.json"));
+        break;
+      case REQUEST_PUBLISH_ARTIFACT_VALIDATE:
+        apiRequest.setRequestBody(Util.readResource("/payloads/publish-validate.json"));
+        break;
+      default:
+        apiRequest.setRequestBody("{}");
+    }
+  }
+
+  /**
+   * Handles the request.
+   */
+  @Benchmark
+  public GoPluginApiResponse handle() {
+    return plugin.handle(apiRequest);
+  }
+}
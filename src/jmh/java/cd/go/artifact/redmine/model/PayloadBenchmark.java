@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.model;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import cd.go.artifact.redmine.annotation.ValidationResult;
+import cd.go.artifact.redmine.utils.Util;
+
+/**
+ * The {@link PayloadBenchmark} measures the decoding, validation and encoding of the publish
+ * payloads. The recorded publish request is enlarged with generated environment variables, the
+ * response carries the digests of the given number of files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadBenchmark {
+
+  @Param({"10", "1000", "10000"})
+  private int variables;
+
+  @Param({"1", "100"})
+  private int files;
+
+  private String              publishRequest;
+  private String              planConfig;
+  private ArtifactPlanConfig  artifactPlanConfig;
+  private ArtifactStoreConfig artifactStoreConfig;
+  private Map<String, Object> digests;
+
+  /**
+   * Prepares the payloads.
+   */
+  @Setup
+  public void setup() {
+    JsonObject request = new JsonParser().parse(Util.readResource("/payloads/publish-artifact.json")).getAsJsonObject();
+    JsonObject environment = request.getAsJsonObject("environment_variables");
+    for (int index = environment.size(); index < variables; index++) {
+      environment.addProperty("VARIABLE_" + index, "value-of-the-environment-variable-" + index);
+    }
+    publishRequest = request.toString();
+    planConfig = Util.readResource("/payloads/publish-validate.json");
+    artifactPlanConfig = ArtifactPlanConfig.fromJSON(planConfig);
+    artifactStoreConfig = ArtifactStoreConfig.fromJSON(Util.readResource("/payloads/store-validate.json"));
+
+    digests = new LinkedHashMap<>();
+    for (int index = 0; index < files; index++) {
+      Map<String, Object> digest = new LinkedHashMap<>();
+      digest.put("size", 1048576L + index);
+      digest.put("md5", String.format("%032x", index));
+      digest.put("sha256", String.format("%064x", index));
+      digests.put(String.format("gocd-redmine-%d.jar", index), digest);
+    }
+  }
+
+  /**
+   * Decodes the publish request, including the environment variables.
+   */
+  @Benchmark
+  public PublishArtifactRequest decodePublishRequest() {
+    return PublishArtifactRequest.fromJSON(publishRequest);
+  }
+
+  /**
+   * Decodes the plan configuration with the {@link ArtifactPlanConfigTypeAdapter}.
+   */
+  @Benchmark
+  public ArtifactPlanConfig decodePlanConfig() {
+    return ArtifactPlanConfig.fromJSON(planConfig);
+  }
+
+  /**
+   * Validates the plan configuration.
+   */
+  @Benchmark
+  public ValidationResult validatePlanConfig() {
+    return artifactPlanConfig.validate();
+  }
+
+  /**
+   * Validates the store configuration.
+   */
+  @Benchmark
+  public ValidationResult validateStoreConfig() {
+    return artifactStoreConfig.validate();
+  }
+
+  /**
+   * Encodes the publish response with the digests of the files.
+   */
+  @Benchmark
+  public String encodePublishResponse() {
+    PublishArtifactResponse response = new PublishArtifactResponse();
+    response.addMetadata("files", digests);
+    return response.toJSON();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The {@link FileTree} generates a directory tree for the benchmarks. The tree has the given number
+ * of directory levels with the same fan-out on each level, the files are spread over the leaf
+ * directories. Half of the files are <code>.bin</code> files, the other half <code>.txt</code>
+ * files, so that the patterns have to filter. Generated trees are kept below
+ * <code>java.io.tmpdir</code> and reused, as generating a million files takes minutes.
+ */
+class FileTree {
+
+  private static final String ROOT = "redmine-jmh";
+
+  private final Path root;
+  private final int  files;
+  private final int  depth;
+  private final int  fanOut;
+
+  /**
+   * Constructs an instance of {@link FileTree}.
+   *
+   * @param files
+   * @param depth
+   */
+  FileTree(int files, int depth) {
+    this.files = files;
+    this.depth = depth;
+    this.fanOut = Math.max(1, (int) Math.round(Math.pow(files, 1.0 / (depth + 1))));
+    this.root = Paths.get(System.getProperty("java.io.tmpdir"), FileTree.ROOT, files + "-" + depth);
+  }
+
+  /**
+   * Gets the root directory of the tree.
+   */
+  final Path getRoot() {
+    return root;
+  }
+
+  /**
+   * Gets the first leaf directory, relative to the root.
+   */
+  final Path getFirstLeaf() {
+    Path path = Paths.get("");
+    for (int level = 0; level < depth; level++) {
+      path = path.resolve("dir-0");
+    }
+    return path;
+  }
+
+  /**
+   * Gets the source pattern matching all <code>.bin</code> files of the tree. The pattern either
+   * captures each path segment as group, or only uses wildcards.
+   *
+   * @param capture
+   */
+  final String getPattern(boolean capture) {
+    return getPattern(capture, "bin");
+  }
+
+  /**
+   * Gets the source pattern matching all files of the tree with the extension.
+   *
+   * @param capture
+   * @param extension
+   */
+  final String getPattern(boolean capture, String extension) {
+    StringBuilder pattern = new StringBuilder();
+    for (int level = 0; level < depth; level++) {
+      pattern.append(capture ? "dir-(.%)/" : "dir-.%/");
+    }
+    return pattern.append(capture ? "file-(.%)\\." : "file-.%\\.").append(extension).toString();
+  }
+
+  /**
+   * Creates the tree, unless it has been created by a previous run.
+   */
+  final FileTree create() throws IOException {
+    Path done = root.resolve(".done");
+    if (Files.exists(done)) {
+      return this;
+    }
+
+    int leaves = (int) Math.pow(fanOut, depth);
+    int perLeaf = (files + leaves - 1) / leaves;
+    int created = 0;
+    for (int leaf = 0; leaf < leaves && created < files; leaf++) {
+      Path directory = root;
+      for (int level = depth - 1, index = leaf; level >= 0; level--) {
+        int divisor = (int) Math.pow(fanOut, level);
+        directory = directory.resolve("dir-" + (index / divisor));
+        index %= divisor;
+      }
+      Files.createDirectories(directory);
+      for (int index = 0; index < perLeaf && created < files; index++, created++) {
+        String extension = (created % 2 == 0) ? ".bin" : ".txt";
+        Files.createFile(directory.resolve("file-" + created + extension));
+      }
+    }
+    Files.createFile(done);
+    return this;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link PathMapperBenchmark} measures the glob expansion of a publish over the whole tree,
+ * sequential and in parallel, and over a single directory. The matching of several patterns is measured with a single walk and with a
+ * walk per pattern. The lazy iteration is measured until the first match and over all matches, the
+ * rendering of the destination over all matches. Run it with the GC profiler to get the allocation rate, e.g.
+ * <code>./gradlew jmh -Pjmh="PathMapperBenchmark -p files=1000"</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathMapperBenchmark {
+
+  @Param({"10", "1000", "100000", "1000000"})
+  private int files;
+
+  @Param({"1", "3"})
+  private int depth;
+
+  @Param({"true", "false"})
+  private boolean capture;
+
+  @Param({"1", "4"})
+  private int threads;
+
+  private String        workingDir;
+  private String        pattern;
+  private String        textPattern;
+  private Path          root;
+  private SourceMatcher all;
+  private SourceMatcher leaf;
+  private SourceMatcher multiple;
+
+  private List<PathMapper>    matches;
+  private DestinationTemplate destination;
+
+  /**
+   * Generates the tree of the trial.
+   */
+  @Setup
+  public void setup() throws IOException {
+    FileTree tree = new FileTree(files, depth).create();
+    root = tree.getRoot();
+    workingDir = root.toString();
+    pattern = tree.getPattern(capture);
+    textPattern = tree.getPattern(capture, "txt");
+    all = new SourceMatcher(Collections.singletonList(pattern), Collections.emptyList(), threads);
+    leaf = new SourceMatcher(
+        Collections.singletonList(tree.getFirstLeaf().resolve(Paths.get(pattern).getFileName()).toString()),
+        Collections.emptyList());
+    multiple = new SourceMatcher(Arrays.asList(pattern, textPattern), Collections.singletonList("dir-1"), threads);
+
+    matches = all.list(root);
+    StringBuilder target = new StringBuilder("release");
+    for (int group = 1; group <= matches.get(0).getGroups().size(); group++) {
+      target.append("/${").append(group).append("}-$").append(group);
+    }
+    destination = DestinationTemplate.compile(target.append(".bin").toString());
+  }
+
+  /**
+   * Expands the pattern over the whole tree.
+   */
+  @Benchmark
+  public List<PathMapper> list() {
+    return all.list(root);
+  }
+
+  /**
+   * Iterates over the matches of the whole tree, without collecting them.
+   */
+  @Benchmark
+  public void iterate(Blackhole blackhole) {
+    all.iterator(root).forEachRemaining(blackhole::consume);
+  }
+
+  /**
+   * Iterates until the first match of the tree, the latency until the first upload can start.
+   */
+  @Benchmark
+  public PathMapper first() {
+    return all.iterator(root).next();
+  }
+
+  /**
+   * Renders the destination of all matches.
+   */
+  @Benchmark
+  public void render(Blackhole blackhole) {
+    for (PathMapper match : matches) {
+      blackhole.consume(destination.render(match));
+    }
+  }
+
+  /**
+   * Expands the file pattern within a single leaf directory.
+   */
+  @Benchmark
+  public List<PathMapper> leaf() {
+    return leaf.list(root);
+  }
+
+  /**
+   * Expands two patterns with an exclude in a single walk.
+   */
+  @Benchmark
+  public List<PathMapper> multiple() {
+    return multiple.list(root);
+  }
+
+  /**
+   * Expands two patterns with a walk each.
+   */
+  @Benchmark
+  public List<PathMapper> separate() {
+    List<PathMapper> matches = new ArrayList<>(PathMapper.list(workingDir, pattern));
+    matches.addAll(PathMapper.list(workingDir, textPattern));
+    return matches;
+  }
+}
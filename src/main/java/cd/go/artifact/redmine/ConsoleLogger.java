@@ -24,12 +24,41 @@ import com.thoughtworks.go.plugin.api.request.DefaultGoApiRequest;
 import com.thoughtworks.go.plugin.api.response.DefaultGoApiResponse;
 import com.thoughtworks.go.plugin.api.response.GoApiResponse;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cd.go.artifact.redmine.events.Events;
+import cd.go.artifact.redmine.utils.Settings;
+
+/**
+ * The {@link ConsoleLogger} sends log messages to the console of the job. Messages are queued and
+ * delivered by a background thread, consecutive messages of the same level are sent as a single
+ * request to the server. {@link #flush()} waits until all queued messages have been delivered.
+ *
+ * If the queue is full, the caller either waits or the message is dropped, see
+ * {@link Settings#isConsoleDropOnOverflow()}.
+ */
 public class ConsoleLogger {
+    private static final Gson GSON = new Gson();
+    private static final long FLUSH_TIMEOUT_MILLIS = 30000;
+
     private static ConsoleLogger consoleLogger;
     private final GoApplicationAccessor accessor;
+    private final BlockingQueue<ConsoleLogMessage> queue;
+    private final boolean dropOnOverflow;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object lock = new Object();
+    private long pending;
+    private Thread drainer;
 
     private ConsoleLogger(GoApplicationAccessor accessor) {
         this.accessor = accessor;
+        this.queue = new ArrayBlockingQueue<>(Settings.getConsoleQueueSize());
+        this.dropOnOverflow = Settings.isConsoleDropOnOverflow();
     }
 
     public void info(String message) {
@@ -40,16 +69,138 @@ public class ConsoleLogger {
         sendLog(new ConsoleLogMessage(ConsoleLogMessage.LogLevel.ERROR, message));
     }
 
+    /**
+     * Waits until all queued messages have been sent to the server.
+     */
+    public void flush() {
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MILLIS;
+        synchronized (lock) {
+            while (pending > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    LOG.error(String.format("Timeout while flushing the console log, %d message(s) pending", pending));
+                    break;
+                }
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            LOG.warn(String.format("Dropped %d console log message(s), the console log queue was full", lost));
+        }
+    }
+
     private void sendLog(ConsoleLogMessage consoleLogMessage) {
+        synchronized (lock) {
+            startDrainer();
+            pending++;
+        }
+
+        boolean queued;
+        if (dropOnOverflow) {
+            queued = queue.offer(consoleLogMessage);
+        } else {
+            try {
+                queue.put(consoleLogMessage);
+                queued = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        }
+
+        if (!queued) {
+            dropped.incrementAndGet();
+            delivered(1);
+        }
+    }
+
+    private void startDrainer() {
+        if (drainer == null || !drainer.isAlive()) {
+            drainer = new Thread(this::drain, "redmine-console-logger");
+            drainer.setDaemon(true);
+            drainer.start();
+        }
+    }
+
+    /**
+     * Delivers the queued messages. All messages that are available are taken from the queue and
+     * consecutive messages of the same level are joined. The messages of a failed submission are
+     * dropped, so that a flush never waits for them.
+     */
+    private void drain() {
+        List<ConsoleLogMessage> batch = new ArrayList<>();
+        while (true) {
+            int index = 0;
+            try {
+                ConsoleLogMessage first = queue.poll(1, TimeUnit.MINUTES);
+                if (first == null) {
+                    synchronized (lock) {
+                        if (pending == 0) {
+                            drainer = null;
+                            return;
+                        }
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+
+                while (index < batch.size()) {
+                    ConsoleLogMessage.LogLevel level = batch.get(index).logLevel;
+                    StringBuilder message = new StringBuilder(batch.get(index).message);
+                    int count = 1;
+                    while (index + count < batch.size() && batch.get(index + count).logLevel == level) {
+                        message.append(System.lineSeparator()).append(batch.get(index + count).message);
+                        count++;
+                    }
+                    submit(new ConsoleLogMessage(level, message.toString()), count);
+                    delivered(count);
+                    index += count;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Failed to submit console log", e);
+            } finally {
+                if (index < batch.size()) {
+                    delivered(batch.size() - index);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void submit(ConsoleLogMessage consoleLogMessage, int messages) {
+        Events.ConsoleLog event = Events.consoleLog();
+        event.begin();
         DefaultGoApiRequest request = new DefaultGoApiRequest(Constants.SEND_CONSOLE_LOG, Constants.API_VERSION, Constants.PLUGIN_IDENTIFIER);
-        request.setRequestBody(consoleLogMessage.toJSON());
+        String body = consoleLogMessage.toJSON();
+        request.setRequestBody(body);
 
         GoApiResponse response = accessor.submit(request);
+        event.finish(messages, body.length(), response.responseCode());
         if (response.responseCode() != DefaultGoApiResponse.SUCCESS_RESPONSE_CODE) {
             LOG.error(String.format("Failed to submit console log: %s", response.responseBody()));
         }
     }
 
+    private void delivered(int count) {
+        synchronized (lock) {
+            pending -= count;
+            if (pending <= 0) {
+                pending = 0;
+                lock.notifyAll();
+            }
+        }
+    }
+
     public static ConsoleLogger getLogger(GoApplicationAccessor accessor) {
         if (consoleLogger == null) {
             synchronized (ConsoleLogger.class) {
@@ -72,7 +223,7 @@ public class ConsoleLogger {
         }
 
         public String toJSON() {
-            return new Gson().toJson(this);
+            return GSON.toJson(this);
         }
 
         enum LogLevel {
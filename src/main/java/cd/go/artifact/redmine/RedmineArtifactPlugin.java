@@ -24,11 +24,14 @@ import com.thoughtworks.go.plugin.api.exceptions.UnhandledRequestTypeException;
 import com.thoughtworks.go.plugin.api.info.PluginContext;
 import com.thoughtworks.go.plugin.api.logging.Logger;
 import com.thoughtworks.go.plugin.api.request.GoPluginApiRequest;
+import com.thoughtworks.go.plugin.api.response.DefaultGoPluginApiResponse;
 import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
 
 import java.util.Properties;
 
 import cd.go.artifact.redmine.executors.*;
+import cd.go.artifact.redmine.metrics.Metrics;
+import cd.go.artifact.redmine.utils.Settings;
 import cd.go.artifact.redmine.utils.Util;
 
 @Extension
@@ -40,6 +43,7 @@ public class RedmineArtifactPlugin implements GoPlugin {
     public void onLoad(PluginContext ctx) {
         final Properties properties = Util.getPluginProperties();
         LOG.info(String.format("Loading plugin %s[%s].", properties.getProperty("name"), properties.getProperty("pluginId")));
+        Metrics.get().report(LOG, Settings.getMetricsIntervalSeconds());
     }
 
     @Override
@@ -49,40 +53,57 @@ public class RedmineArtifactPlugin implements GoPlugin {
 
     @Override
     public GoPluginApiResponse handle(GoPluginApiRequest request) {
+        Request requestType = Request.fromString(request.requestName());
+        String metric = "request." + (requestType == null ? "unknown" : requestType.requestName());
+        long started = System.nanoTime();
         try {
-            switch (Request.fromString(request.requestName())) {
-                case REQUEST_GET_PLUGIN_ICON:
-                    return new GetPluginIconExecutor().execute();
-                case REQUEST_GET_PLUGIN_CAPABILITIES:
-                    return new GetCapabilitiesExecutor().execute();
-                case REQUEST_STORE_CONFIG_METADATA:
-                    return new GetArtifactStoreConfigMetadataExecutor().execute();
-                case REQUEST_STORE_CONFIG_VIEW:
-                    return new GetArtifactStoreViewExecutor().execute();
-                case REQUEST_STORE_CONFIG_VALIDATE:
-                    return new ValidateArtifactStoreConfigExecutor(request).execute();
-                case REQUEST_PUBLISH_ARTIFACT_METADATA:
-                    return new GetPublishArtifactConfigMetadataExecutor().execute();
-                case REQUEST_PUBLISH_ARTIFACT_VIEW:
-                    return new GetPublishArtifactViewExecutor().execute();
-                case REQUEST_PUBLISH_ARTIFACT_VALIDATE:
-                    return new ValidatePublishArtifactConfigExecutor(request).execute();
-                case REQUEST_FETCH_ARTIFACT_METADATA:
-                    return new GetFetchArtifactMetadataExecutor().execute();
-                case REQUEST_FETCH_ARTIFACT_VIEW:
-                    return new GetFetchArtifactViewExecutor().execute();
-                case REQUEST_FETCH_ARTIFACT_VALIDATE:
-                    return new ValidateFetchArtifactConfigExecutor().execute();
-                case REQUEST_PUBLISH_ARTIFACT:
-                    return new PublishArtifactExecutor(request, consoleLogger).execute();
-                case REQUEST_FETCH_ARTIFACT:
-                    return new FetchArtifactExecutor(request, consoleLogger).execute();
-                default:
-                    throw new UnhandledRequestTypeException(request.requestName());
+            GoPluginApiResponse response = execute(requestType, request);
+            if (response.responseCode() != DefaultGoPluginApiResponse.SUCCESS_RESPONSE_CODE) {
+                Metrics.get().count(metric + ".errors", 1);
             }
+            return response;
         } catch (Exception e) {
+            Metrics.get().count(metric + ".errors", 1);
             LOG.error("Error while executing request " + request.requestName(), e);
             throw new RuntimeException(e);
+        } finally {
+            Metrics.get().timeSince(metric, started);
+        }
+    }
+
+    private GoPluginApiResponse execute(Request requestType, GoPluginApiRequest request) throws Exception {
+        if (requestType == null) {
+            throw new UnhandledRequestTypeException(request.requestName());
+        }
+        switch (requestType) {
+            case REQUEST_GET_PLUGIN_ICON:
+                return new GetPluginIconExecutor().execute();
+            case REQUEST_GET_PLUGIN_CAPABILITIES:
+                return new GetCapabilitiesExecutor().execute();
+            case REQUEST_STORE_CONFIG_METADATA:
+                return new GetArtifactStoreConfigMetadataExecutor().execute();
+            case REQUEST_STORE_CONFIG_VIEW:
+                return new GetArtifactStoreViewExecutor().execute();
+            case REQUEST_STORE_CONFIG_VALIDATE:
+                return new ValidateArtifactStoreConfigExecutor(request).execute();
+            case REQUEST_PUBLISH_ARTIFACT_METADATA:
+                return new GetPublishArtifactConfigMetadataExecutor().execute();
+            case REQUEST_PUBLISH_ARTIFACT_VIEW:
+                return new GetPublishArtifactViewExecutor().execute();
+            case REQUEST_PUBLISH_ARTIFACT_VALIDATE:
+                return new ValidatePublishArtifactConfigExecutor(request).execute();
+            case REQUEST_FETCH_ARTIFACT_METADATA:
+                return new GetFetchArtifactMetadataExecutor().execute();
+            case REQUEST_FETCH_ARTIFACT_VIEW:
+                return new GetFetchArtifactViewExecutor().execute();
+            case REQUEST_FETCH_ARTIFACT_VALIDATE:
+                return new ValidateFetchArtifactConfigExecutor().execute();
+            case REQUEST_PUBLISH_ARTIFACT:
+                return new PublishArtifactExecutor(request, consoleLogger).execute();
+            case REQUEST_FETCH_ARTIFACT:
+                return new FetchArtifactExecutor(request, consoleLogger).execute();
+            default:
+                throw new UnhandledRequestTypeException(request.requestName());
         }
     }
 
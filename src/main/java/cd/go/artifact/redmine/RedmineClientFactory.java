@@ -1,26 +1,106 @@
 
 package cd.go.artifact.redmine;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import cd.go.artifact.redmine.model.ArtifactStoreConfig;
 import cd.go.artifact.redmine.utils.Redmine;
+import cd.go.artifact.redmine.utils.RedmineTransport;
+import cd.go.artifact.redmine.utils.Settings;
 
 public class RedmineClientFactory {
 
   private static final RedmineClientFactory REDMINE_CLIENT_FACTORY = new RedmineClientFactory();
 
+  private final RedmineTransport transport = new RedmineTransport();
+
+  // The clients are cached per store configuration, including the API key, so a client is never
+  // shared between different credentials.
+  private final Map<ArtifactStoreConfig, CachedClient> clients = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final int  maxClients;
+  private final long maxIdleMillis;
+
+  public RedmineClientFactory() {
+    this(Settings.getClientCacheSize(), Settings.getClientIdleSeconds() * 1000L);
+  }
+
+  RedmineClientFactory(int maxClients, long maxIdleMillis) {
+    this.maxClients = maxClients;
+    this.maxIdleMillis = maxIdleMillis;
+  }
+
+  /**
+   * Gets the {@link Redmine} client of the store. The client is reused while the store is used
+   * regularly, idle clients and the least recently used clients beyond the cache size are evicted.
+   *
+   * @param artifactStoreConfig
+   */
   public Redmine create(ArtifactStoreConfig artifactStoreConfig) {
-    return createClient(artifactStoreConfig);
+    long now = System.currentTimeMillis();
+    synchronized (clients) {
+      evict(now);
+
+      CachedClient cached = clients.get(artifactStoreConfig);
+      if (cached == null) {
+        ArtifactStoreConfig key = new ArtifactStoreConfig(artifactStoreConfig.getUrl(), artifactStoreConfig.getKey(),
+            artifactStoreConfig.getProject(), artifactStoreConfig.getVersion());
+        cached = new CachedClient(createClient(transport, key));
+        clients.put(key, cached);
+        evict(now);
+      }
+      cached.lastUsed = now;
+      return cached.client;
+    }
+  }
+
+  /**
+   * Gets the {@link RedmineTransport} shared by all clients.
+   */
+  public RedmineTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Removes the idle clients and the least recently used clients beyond the cache size.
+   *
+   * @param now
+   */
+  private void evict(long now) {
+    Iterator<CachedClient> iterator = clients.values().iterator();
+    while (iterator.hasNext()) {
+      CachedClient cached = iterator.next();
+      if (clients.size() > maxClients || now - cached.lastUsed > maxIdleMillis) {
+        iterator.remove();
+      }
+    }
   }
 
   public static RedmineClientFactory instance() {
     return REDMINE_CLIENT_FACTORY;
   }
 
-  private static Redmine createClient(ArtifactStoreConfig artifactStoreConfig) {
+  private static Redmine createClient(RedmineTransport transport, ArtifactStoreConfig artifactStoreConfig) {
     String url = artifactStoreConfig.getUrl();
     String key = artifactStoreConfig.getKey();
     String project = artifactStoreConfig.getProject();
     String version = artifactStoreConfig.getVersion();
-    return new Redmine(url, key, project, version);
+    return new Redmine(transport, url, key, project, version);
+  }
+
+  /**
+   * The {@link CachedClient} is a {@link Redmine} client with the time of its last use.
+   */
+  private static class CachedClient {
+
+    private final Redmine client;
+    private long          lastUsed;
+
+    private CachedClient(Redmine client) {
+      this.client = client;
+      this.lastUsed = System.currentTimeMillis();
+    }
   }
 }
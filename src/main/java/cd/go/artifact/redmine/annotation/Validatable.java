@@ -38,6 +38,7 @@ public interface Validatable {
   default List<ValidationError> validateAllFieldsAsRequired() {
     return toProperties().entrySet().stream()
         .filter(entry -> StringUtils.isBlank(entry.getValue()) && !entry.getKey().equals("Destination")
+            && !entry.getKey().equals("Verbosity") && !entry.getKey().equals("Exclude")
             && !entry.getKey().equals("Username") && !entry.getKey().equals("Password"))
         .map(entry -> new ValidationError(entry.getKey(), entry.getKey() + " must not be blank."))
         .collect(Collectors.toList());
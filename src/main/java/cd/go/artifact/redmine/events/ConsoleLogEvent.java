@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The {@link ConsoleLogEvent} records the submission of console log messages to the server.
+ */
+@Name("cd.go.artifact.redmine.ConsoleLog")
+@Label("Console Log Submission")
+@Description("The submission of console log messages to the GoCD server")
+@Category({ "GoCD", "Redmine" })
+public class ConsoleLogEvent extends jdk.jfr.Event implements Events.ConsoleLog {
+
+  @Label("Messages")
+  int messages;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Response Code")
+  int status;
+
+  /**
+   * Commits the event, if it is enabled by the recording.
+   *
+   * @param messages
+   * @param bytes
+   * @param status
+   */
+  public final void finish(int messages, long bytes, int status) {
+    if (shouldCommit()) {
+      this.messages = messages;
+      this.bytes = bytes;
+      this.status = status;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.events;
+
+/**
+ * The {@link Events} create the JDK Flight Recorder events of the plugin. The event classes are
+ * only loaded if the JVM provides the flight recorder, e.g. Java 8u262 or 11; on other JVMs the
+ * events are no-ops, so that the plugin doesn't depend on the <code>jdk.jfr</code> module.
+ */
+public class Events {
+
+  private static final boolean ENABLED = Events.isAvailable();
+  private static final None    NONE    = new None();
+
+  /**
+   * Constructs an instance of {@link Events}.
+   */
+  private Events() {}
+
+  /**
+   * Creates the event of a file download.
+   */
+  public static Http download() {
+    return ENABLED ? new DownloadEvent() : NONE;
+  }
+
+  /**
+   * Creates the event of a file upload.
+   */
+  public static Http upload() {
+    return ENABLED ? new UploadEvent() : NONE;
+  }
+
+  /**
+   * Creates the event of an upload linked to the version.
+   */
+  public static Http link() {
+    return ENABLED ? new LinkEvent() : NONE;
+  }
+
+  /**
+   * Creates the event of listing the project files.
+   */
+  public static Http list() {
+    return ENABLED ? new ListEvent() : NONE;
+  }
+
+  /**
+   * Creates the event of parsing a JSON document.
+   */
+  public static Parse parse() {
+    return ENABLED ? new ParseEvent() : NONE;
+  }
+
+  /**
+   * Creates the event of expanding a source pattern.
+   */
+  public static Glob glob() {
+    return ENABLED ? new GlobEvent() : NONE;
+  }
+
+  /**
+   * Creates the event of submitting console log messages.
+   */
+  public static ConsoleLog consoleLog() {
+    return ENABLED ? new ConsoleLogEvent() : NONE;
+  }
+
+  /**
+   * Returns <code>true</code> if the JVM provides the flight recorder.
+   */
+  private static boolean isAvailable() {
+    try {
+      Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * The {@link Http} event of a call to Redmine.
+   */
+  public interface Http {
+
+    void start(String path, long bytes);
+
+    void setStatus(int status);
+
+    void finish();
+  }
+
+  /**
+   * The {@link Parse} event of a JSON document.
+   */
+  public interface Parse {
+
+    void begin();
+
+    void finish(String type, long bytes);
+  }
+
+  /**
+   * The {@link Glob} event of a source pattern.
+   */
+  public interface Glob {
+
+    void begin();
+
+    void finish(String path, int matches);
+  }
+
+  /**
+   * The {@link ConsoleLog} event of a console log submission.
+   */
+  public interface ConsoleLog {
+
+    void begin();
+
+    void finish(int messages, long bytes, int status);
+  }
+
+  /**
+   * The {@link None} event is used if the JVM doesn't provide the flight recorder.
+   */
+  private static class None implements Http, Parse, Glob, ConsoleLog {
+
+    @Override
+    public void begin() {}
+
+    @Override
+    public void start(String path, long bytes) {}
+
+    @Override
+    public void setStatus(int status) {}
+
+    @Override
+    public void finish() {}
+
+    @Override
+    public void finish(String type, long bytes) {}
+
+    @Override
+    public void finish(String path, int matches) {}
+
+    @Override
+    public void finish(int messages, long bytes, int status) {}
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The {@link GlobEvent} records the expansion of a source pattern to the matching files.
+ */
+@Name("cd.go.artifact.redmine.Glob")
+@Label("Glob Expansion")
+@Description("The expansion of a source pattern to the matching files")
+@Category({ "GoCD", "Redmine" })
+public class GlobEvent extends jdk.jfr.Event implements Events.Glob {
+
+  @Label("Path")
+  String path;
+
+  @Label("Matches")
+  int matches;
+
+  /**
+   * Commits the event, if it is enabled by the recording.
+   *
+   * @param path
+   * @param matches
+   */
+  public final void finish(String path, int matches) {
+    if (shouldCommit()) {
+      this.path = path;
+      this.matches = matches;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+
+/**
+ * The {@link HttpEvent} is the base of the JDK Flight Recorder events for HTTP calls to Redmine. The
+ * events are only committed while a recording is active.
+ */
+@Category({ "GoCD", "Redmine" })
+public abstract class HttpEvent extends jdk.jfr.Event implements Events.Http {
+
+  @Label("Path")
+  String path;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("HTTP Status")
+  int status;
+
+  /**
+   * Starts the timing of the event.
+   *
+   * @param path
+   * @param bytes
+   */
+  public final void start(String path, long bytes) {
+    this.path = path;
+    this.bytes = bytes;
+    begin();
+  }
+
+  /**
+   * Sets the HTTP status of the response.
+   *
+   * @param status
+   */
+  public final void setStatus(int status) {
+    this.status = status;
+  }
+
+  /**
+   * Commits the event, if it is enabled by the recording.
+   */
+  public final void finish() {
+    if (shouldCommit()) {
+      commit();
+    }
+  }
+}
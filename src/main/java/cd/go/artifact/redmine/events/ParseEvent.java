@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The {@link ParseEvent} records the parsing of a JSON document, e.g. a Redmine response or a
+ * request of the server.
+ */
+@Name("cd.go.artifact.redmine.Parse")
+@Label("Response Parsing")
+@Description("The parsing of a JSON response or request")
+@Category({ "GoCD", "Redmine" })
+public class ParseEvent extends jdk.jfr.Event implements Events.Parse {
+
+  @Label("Type")
+  String type;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  /**
+   * Commits the event, if it is enabled by the recording.
+   *
+   * @param type
+   * @param bytes
+   */
+  public final void finish(String type, long bytes) {
+    if (shouldCommit()) {
+      this.type = type;
+      this.bytes = bytes;
+      commit();
+    }
+  }
+}
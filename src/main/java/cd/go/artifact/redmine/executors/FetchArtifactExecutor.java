@@ -21,13 +21,17 @@ import com.google.gson.annotations.SerializedName;
 import com.thoughtworks.go.plugin.api.request.GoPluginApiRequest;
 import com.thoughtworks.go.plugin.api.response.DefaultGoPluginApiResponse;
 import com.thoughtworks.go.plugin.api.response.GoPluginApiResponse;
-import java.io.*;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import cd.go.artifact.redmine.ConsoleLogger;
 import cd.go.artifact.redmine.RedmineClientFactory;
 import cd.go.artifact.redmine.model.ArtifactStoreConfig;
+import cd.go.artifact.redmine.tracing.Span;
+import cd.go.artifact.redmine.tracing.Tracer;
+import cd.go.artifact.redmine.utils.ArtifactCache;
+import cd.go.artifact.redmine.utils.PublishedFile;
 import cd.go.artifact.redmine.utils.Redmine;
 import cd.go.artifact.redmine.utils.Util;
 
@@ -38,65 +42,86 @@ public class FetchArtifactExecutor implements RequestExecutor {
     private FetchArtifactRequest fetchArtifactRequest;
     private final ConsoleLogger consoleLogger;
     private RedmineClientFactory clientFactory;
+    private final Tracer tracer = new Tracer("fetch");
 
     public FetchArtifactExecutor(GoPluginApiRequest request, ConsoleLogger consoleLogger) {
         this(request, consoleLogger, RedmineClientFactory.instance());
     }
 
     FetchArtifactExecutor(GoPluginApiRequest request, ConsoleLogger consoleLogger, RedmineClientFactory clientFactory) {
-        this.fetchArtifactRequest = FetchArtifactRequest.fromJSON(request.requestBody());
+        Span span = tracer.getRoot().child("parse");
+        try {
+            this.fetchArtifactRequest = FetchArtifactRequest.fromJSON(request.requestBody());
+        } finally {
+            span.close();
+        }
         this.consoleLogger = consoleLogger;
         this.clientFactory = clientFactory;
     }
 
     @Override
     public GoPluginApiResponse execute() {
+        final Span root = tracer.getRoot();
         try {
-            final Map<String, String> artifactMap = fetchArtifactRequest.getMetadata();
-            validateMetadata(artifactMap);
-
+            final Map<String, PublishedFile> files = getFiles(fetchArtifactRequest.getMetadata());
             final String workingDir = fetchArtifactRequest.getAgentWorkingDir();
-            final String sourceFileToGet = artifactMap.get("Source");
+            final String url = fetchArtifactRequest.getArtifactStoreConfig().getUrl();
+            root.attribute("files", files.size());
 
-            consoleLogger.info(String.format("Retrieving file `%s` from WebDAV `%s`.", sourceFileToGet, fetchArtifactRequest.getArtifactStoreConfig().getUrl()));
-            LOG.info(String.format("Retrieving file `%s` from WebDAV `%s`.", sourceFileToGet, fetchArtifactRequest.getArtifactStoreConfig().getUrl()));
+            consoleLogger.info(String.format("Retrieving %d file(s) %s from Redmine `%s`.", files.size(), files.keySet(), url));
+            LOG.info(String.format("Retrieving %d file(s) %s from Redmine `%s`.", files.size(), files.keySet(), url));
 
             Redmine redmine = clientFactory.create(fetchArtifactRequest.getArtifactStoreConfig());
-//            String resource = String.format("%s/%s", fetchArtifactRequest.getArtifactStoreConfig().getUrl(), sourceFileToGet);
-//            InputStream fileReader = sardine.get(resource);
-//            File outFile = new File(Paths.get(workingDir, sourceFileToGet).toString());
-//            OutputStream writer = new BufferedOutputStream(new FileOutputStream(outFile));
-//
-//            int read_length = -1;
-//
-//            while ((read_length = fileReader.read()) != -1) {
-//                writer.write(read_length);
-//            }
-//
-//            writer.flush();
-//            writer.close();
-//            fileReader.close();
-//
-//            consoleLogger.info(String.format("Source `%s` successfully pulled from WebDAV `%s`.", sourceFileToGet, fetchArtifactRequest.getArtifactStoreConfig().getUrl()));
-
-//          return DefaultGoPluginApiResponse.success("");
-          return DefaultGoPluginApiResponse.error("Download not supported");
+            long bytes = redmine.download(files, Paths.get(workingDir), ArtifactCache.instance(), consoleLogger, root);
+            root.attribute("bytes", bytes);
+
+            consoleLogger.info(String.format("%d file(s), %d bytes successfully pulled from Redmine `%s`.", files.size(), bytes, url));
+            return DefaultGoPluginApiResponse.success("");
         } catch (Exception e) {
             final String message = format("Failed pull source file: %s", e);
             consoleLogger.error(message);
             LOG.error(message);
+            root.attribute("error", message);
             return DefaultGoPluginApiResponse.error(message);
+        } finally {
+            Span span = root.child("console.flush");
+            try {
+                consoleLogger.flush();
+            } finally {
+                span.close();
+            }
+            tracer.write(fetchArtifactRequest.getAgentWorkingDir());
         }
     }
 
-    public void validateMetadata(Map<String, String> artifactMap) {
+    public void validateMetadata(Map<String, Object> artifactMap) {
         if (artifactMap == null) {
-            throw new RuntimeException(String.format("Cannot fetch the source file from WebDAV: Invalid metadata received from the GoCD server. The artifact metadata is null."));
+            throw new RuntimeException(String.format("Cannot fetch the source file from Redmine: Invalid metadata received from the GoCD server. The artifact metadata is null."));
         }
 
-        if (!artifactMap.containsKey("Source")) {
-            throw new RuntimeException(String.format("Cannot fetch the source file from WebDAV: Invalid metadata received from the GoCD server. The artifact metadata must contain the key `%s`.", "Source"));
+        if (!(artifactMap.get("files") instanceof Map) && !artifactMap.containsKey("Source")) {
+            throw new RuntimeException(String.format("Cannot fetch the source file from Redmine: Invalid metadata received from the GoCD server. The artifact metadata must contain the key `%s` or `%s`.", "files", "Source"));
+        }
+    }
+
+    /**
+     * Gets the files to fetch with the attachment ids and digests of the publish. The metadata of a
+     * publish contains the published files, older metadata only the name of the file as `Source`.
+     */
+    Map<String, PublishedFile> getFiles(Map<String, Object> artifactMap) {
+        validateMetadata(artifactMap);
+
+        Map<String, PublishedFile> files = new LinkedHashMap<>();
+        if (artifactMap.get("files") instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) artifactMap.get("files")).entrySet()) {
+                Object file = entry.getValue();
+                files.put(entry.getKey().toString(),
+                        (file instanceof Map) ? PublishedFile.fromMap((Map<?, ?>) file) : new PublishedFile(null, null));
+            }
+        } else {
+            files.put(String.valueOf(artifactMap.get("Source")), new PublishedFile(null, null));
         }
+        return files;
     }
 
     // TODO Diogomrorl: Maybe this can be moved to a separate file under model to keep coherence
@@ -106,7 +131,7 @@ public class FetchArtifactExecutor implements RequestExecutor {
         private ArtifactStoreConfig artifactStoreConfig;
         @Expose
         @SerializedName("artifact_metadata")
-        private Map<String, String> metadata;
+        private Map<String, Object> metadata;
 
         @Expose
         @SerializedName("agent_working_directory")
@@ -115,7 +140,7 @@ public class FetchArtifactExecutor implements RequestExecutor {
         public FetchArtifactRequest() {
         }
 
-        public FetchArtifactRequest(ArtifactStoreConfig artifactStoreConfig, Map<String, String> metadata, String agentWorkingDir) {
+        public FetchArtifactRequest(ArtifactStoreConfig artifactStoreConfig, Map<String, Object> metadata, String agentWorkingDir) {
             this.artifactStoreConfig = artifactStoreConfig;
             this.metadata = metadata;
             this.agentWorkingDir = agentWorkingDir;
@@ -129,7 +154,7 @@ public class FetchArtifactExecutor implements RequestExecutor {
             return agentWorkingDir;
         }
 
-        public Map<String, String> getMetadata() {
+        public Map<String, Object> getMetadata() {
             return metadata;
         }
 
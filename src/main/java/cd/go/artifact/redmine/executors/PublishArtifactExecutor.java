@@ -28,20 +28,31 @@ import cd.go.artifact.redmine.model.ArtifactPlan;
 import cd.go.artifact.redmine.model.ArtifactStoreConfig;
 import cd.go.artifact.redmine.model.PublishArtifactRequest;
 import cd.go.artifact.redmine.model.PublishArtifactResponse;
+import cd.go.artifact.redmine.tracing.Span;
+import cd.go.artifact.redmine.tracing.Tracer;
+import cd.go.artifact.redmine.utils.DestinationTemplate;
 import cd.go.artifact.redmine.utils.Redmine;
+import cd.go.artifact.redmine.utils.SourceMatcher;
+import cd.go.artifact.redmine.utils.UploadReport;
 
 public class PublishArtifactExecutor implements RequestExecutor {
     private final PublishArtifactRequest publishArtifactRequest;
     private final PublishArtifactResponse publishArtifactResponse;
     private final ConsoleLogger consoleLogger;
     private final RedmineClientFactory clientFactory;
+    private final Tracer tracer = new Tracer("publish");
 
     public PublishArtifactExecutor(GoPluginApiRequest request, ConsoleLogger consoleLogger) {
         this(request, consoleLogger, RedmineClientFactory.instance());
     }
 
     PublishArtifactExecutor(GoPluginApiRequest request, ConsoleLogger consoleLogger, RedmineClientFactory clientFactory) {
-        this.publishArtifactRequest = PublishArtifactRequest.fromJSON(request.requestBody());
+        Span span = tracer.getRoot().child("parse");
+        try {
+            this.publishArtifactRequest = PublishArtifactRequest.fromJSON(request.requestBody());
+        } finally {
+            span.close();
+        }
         this.consoleLogger = consoleLogger;
         this.clientFactory = clientFactory;
         publishArtifactResponse = new PublishArtifactResponse();
@@ -50,21 +61,46 @@ public class PublishArtifactExecutor implements RequestExecutor {
     @Override
     public GoPluginApiResponse execute() {
         ArtifactPlan artifactPlan = publishArtifactRequest.getArtifactPlan();
+        final Span root = tracer.getRoot().attribute("artifact", artifactPlan.getId());
         final ArtifactStoreConfig artifactStoreConfig = publishArtifactRequest.getArtifactStore().getArtifactStoreConfig();
         try {
             final Redmine redmine = clientFactory.create(artifactStoreConfig);
             final String sourceFile = artifactPlan.getArtifactPlanConfig().getSource();
-            final String targetFile = artifactPlan.getArtifactPlanConfig().getDestination();
+            final SourceMatcher source = SourceMatcher.compile(sourceFile, artifactPlan.getArtifactPlanConfig().getExclude());
+            final DestinationTemplate destination = DestinationTemplate.compile(artifactPlan.getArtifactPlanConfig().getDestination());
+            source.verify(destination);
             final String workingDir = publishArtifactRequest.getAgentWorkingDir();
 
-            redmine.upload(workingDir, sourceFile, targetFile, consoleLogger);
+            final boolean verbose = artifactPlan.getArtifactPlanConfig().isVerbose();
+            final UploadReport report = redmine.upload(workingDir, source, destination, verbose, consoleLogger, root);
+            LOG.info(String.format("Redmine transport: %s", clientFactory.getTransport().getStatistics()));
+            if (report.hasFailures()) {
+                for (UploadReport.Result failure : report.getFailures()) {
+                    consoleLogger.error(String.format("Failed to publish %s", failure));
+                }
+                String message = String.format("Failed to publish %s: %s", artifactPlan, report);
+                LOG.error(message);
+                root.attribute("error", message);
+                return DefaultGoPluginApiResponse.error(message);
+            }
 
+            publishArtifactResponse.addMetadata("files", report.getDigests());
+            consoleLogger.info(String.format("Source file `%s`: %s.", sourceFile, report));
             consoleLogger.info(String.format("Source file `%s` successfully pushed to Redmine.", sourceFile));
             return DefaultGoPluginApiResponse.success(publishArtifactResponse.toJSON());
         } catch (Exception e) {
             consoleLogger.error(String.format("Failed to publish %s: %s", artifactPlan, e));
             LOG.error(String.format("Failed to publish %s: %s", artifactPlan, e.getMessage()), e);
+            root.attribute("error", String.valueOf(e));
             return DefaultGoPluginApiResponse.error(String.format("Failed to publish %s: %s", artifactPlan, e.getMessage()));
+        } finally {
+            Span span = root.child("console.flush");
+            try {
+                consoleLogger.flush();
+            } finally {
+                span.close();
+            }
+            tracer.write(publishArtifactRequest.getAgentWorkingDir());
         }
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@link Histogram} records latencies without locks. Values are counted in logarithmic buckets,
+ * each power of two is split into linear sub-buckets (similar to an HDR histogram), which keeps the
+ * relative error of the percentiles below 12.5% with a fixed memory footprint.
+ */
+public class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS     = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS         = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong      count  = new AtomicLong();
+  private final AtomicLong      sum    = new AtomicLong();
+  private final AtomicLong      max    = new AtomicLong();
+
+  /**
+   * Records a value, e.g. a duration in nanoseconds.
+   *
+   * @param value
+   */
+  public final void record(long value) {
+    long positive = Math.max(0, value);
+    counts.incrementAndGet(Histogram.indexOf(positive));
+    count.incrementAndGet();
+    sum.addAndGet(positive);
+    max.accumulateAndGet(positive, Math::max);
+  }
+
+  /**
+   * Gets the number of recorded values.
+   */
+  public final long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Gets the mean of the recorded values.
+   */
+  public final double getMean() {
+    long total = count.get();
+    return (total == 0) ? 0 : (double) sum.get() / total;
+  }
+
+  /**
+   * Gets the largest recorded value.
+   */
+  public final long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gets the approximate value at the percentile (0-100).
+   *
+   * @param percentile
+   */
+  public final long getPercentile(double percentile) {
+    long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int index = 0; index < BUCKETS; index++) {
+      seen += counts.get(index);
+      if (seen >= Math.max(1, rank)) {
+        return Math.min(Histogram.upperBoundOf(index), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Gets a snapshot of the histogram, the values are converted with the scale (e.g. 1e6 for
+   * nanoseconds to milliseconds).
+   *
+   * @param scale
+   */
+  public final Map<String, Object> snapshot(double scale) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("count", getCount());
+    values.put("mean", getMean() / scale);
+    values.put("p50", getPercentile(50) / scale);
+    values.put("p95", getPercentile(95) / scale);
+    values.put("p99", getPercentile(99) / scale);
+    values.put("max", getMax() / scale);
+    return values;
+  }
+
+  /**
+   * Gets the bucket of a value.
+   *
+   * @param value
+   */
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Gets the largest value of a bucket.
+   *
+   * @param index
+   */
+  static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    long lower = (1L << magnitude) + (subBucket << (magnitude - SUB_BUCKET_BITS));
+    return lower + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.thoughtworks.go.plugin.api.logging.Logger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link Metrics} registry collects the counters and latency histograms of the plugin: the
+ * requests handled by the plugin, the HTTP calls to Redmine and the transferred bytes. Recording
+ * is lock-free, the registry can be written periodically to the plugin log or taken as JSON
+ * snapshot.
+ */
+public class Metrics {
+
+  private static final Metrics INSTANCE = new Metrics();
+  private static final Gson    GSON     = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+  private static final double  MILLIS   = 1e6;
+
+  private final long                   started    = System.currentTimeMillis();
+  private final Map<String, LongAdder> counters   = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private ScheduledExecutorService     reporter;
+
+  /**
+   * Gets the {@link Metrics} of the plugin.
+   */
+  public static Metrics get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Adds the value to the counter.
+   *
+   * @param name
+   * @param value
+   */
+  public final void count(String name, long value) {
+    counters.computeIfAbsent(name, n -> new LongAdder()).add(value);
+  }
+
+  /**
+   * Records a duration in nanoseconds.
+   *
+   * @param name
+   * @param nanos
+   */
+  public final void time(String name, long nanos) {
+    histograms.computeIfAbsent(name, n -> new Histogram()).record(nanos);
+  }
+
+  /**
+   * Records the duration since the start time, see {@link System#nanoTime()}.
+   *
+   * @param name
+   * @param startNanos
+   */
+  public final void timeSince(String name, long startNanos) {
+    time(name, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Gets a snapshot of all metrics, latencies are in milliseconds.
+   */
+  public final Map<String, Object> snapshot() {
+    Map<String, Object> counterValues = new TreeMap<>();
+    counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+
+    Map<String, Object> latencies = new TreeMap<>();
+    histograms.forEach((name, histogram) -> latencies.put(name, histogram.snapshot(MILLIS)));
+
+    Map<String, Object> snapshot = new TreeMap<>();
+    snapshot.put("uptime_ms", System.currentTimeMillis() - started);
+    snapshot.put("counters", counterValues);
+    snapshot.put("latencies_ms", latencies);
+    return snapshot;
+  }
+
+  /**
+   * Gets the snapshot as JSON.
+   */
+  public final String toJSON() {
+    return GSON.toJson(snapshot());
+  }
+
+  /**
+   * Writes the snapshot periodically to the log. An interval of 0 disables the reporting.
+   *
+   * @param logger
+   * @param intervalSeconds
+   */
+  public final synchronized void report(Logger logger, long intervalSeconds) {
+    if (reporter != null || intervalSeconds <= 0) {
+      return;
+    }
+    reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "redmine-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+    reporter.scheduleAtFixedRate(() -> logger.info("Redmine plugin metrics: " + toJSON()), intervalSeconds,
+        intervalSeconds, TimeUnit.SECONDS);
+  }
+}
@@ -23,6 +23,8 @@ public abstract class ArtifactPlanConfig implements Validatable {
 
     abstract public String getSource();
     abstract public String getDestination();
+    abstract public String getExclude();
+    abstract public boolean isVerbose();
 
     @Override
     public String toString() {
@@ -12,7 +12,8 @@ public class ArtifactPlanConfigTypeAdapter implements JsonDeserializer<ArtifactP
     public ArtifactPlanConfig deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
         JsonObject jsonObject = json.getAsJsonObject();
         if (isBuildFileConfig(jsonObject)) {
-            return new RedmineFileArtifactPlanConfig(jsonObject.get("Source").getAsString(), parseDestination(jsonObject));
+            return new RedmineFileArtifactPlanConfig(jsonObject.get("Source").getAsString(), parseDestination(jsonObject),
+                    parseVerbosity(jsonObject), parseExclude(jsonObject));
         } else {
             throw new JsonParseException("Ambiguous or unknown json. `Source` property must be specified.");
         }
@@ -26,6 +27,22 @@ public class ArtifactPlanConfigTypeAdapter implements JsonDeserializer<ArtifactP
         return Optional.empty();
     }
 
+    private Optional<String> parseVerbosity(JsonObject jsonObject) {
+        JsonElement verbosity = jsonObject.get("Verbosity");
+        if (verbosity != null && !verbosity.isJsonNull() && StringUtils.isNotBlank(verbosity.getAsString())) {
+            return Optional.of(verbosity.getAsString().trim());
+        }
+        return Optional.empty();
+    }
+
+    private Optional<String> parseExclude(JsonObject jsonObject) {
+        JsonElement exclude = jsonObject.get("Exclude");
+        if (exclude != null && !exclude.isJsonNull() && StringUtils.isNotBlank(exclude.getAsString())) {
+            return Optional.of(exclude.getAsString().trim());
+        }
+        return Optional.empty();
+    }
+
     @Override
     public JsonElement serialize(ArtifactPlanConfig src, Type typeOfSrc, JsonSerializationContext context) {
         if (src instanceof RedmineFileArtifactPlanConfig) {
@@ -3,12 +3,21 @@ package cd.go.artifact.redmine.model;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
+import java.nio.file.InvalidPathException;
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.regex.PatternSyntaxException;
 
 import cd.go.artifact.redmine.annotation.FieldMetadata;
+import cd.go.artifact.redmine.annotation.ValidationResult;
+import cd.go.artifact.redmine.utils.DestinationTemplate;
+import cd.go.artifact.redmine.utils.SourceMatcher;
 
 public class RedmineFileArtifactPlanConfig extends ArtifactPlanConfig {
+    public static final String VERBOSITY_SUMMARY = "summary";
+    public static final String VERBOSITY_VERBOSE = "verbose";
+
     @Expose
     @SerializedName("Source")
     @FieldMetadata(key = "Source")
@@ -19,9 +28,30 @@ public class RedmineFileArtifactPlanConfig extends ArtifactPlanConfig {
     @FieldMetadata(key = "Destination")
     private String destination;
 
+    @Expose
+    @SerializedName("Verbosity")
+    @FieldMetadata(key = "Verbosity")
+    private String verbosity;
+
+    @Expose
+    @SerializedName("Exclude")
+    @FieldMetadata(key = "Exclude")
+    private String exclude;
+
     public RedmineFileArtifactPlanConfig(String source, Optional<String> destination) {
+        this(source, destination, Optional.empty());
+    }
+
+    public RedmineFileArtifactPlanConfig(String source, Optional<String> destination, Optional<String> verbosity) {
+        this(source, destination, verbosity, Optional.empty());
+    }
+
+    public RedmineFileArtifactPlanConfig(String source, Optional<String> destination, Optional<String> verbosity,
+            Optional<String> exclude) {
         this.source = source;
         this.destination = destination.orElse("");
+        this.verbosity = verbosity.orElse(VERBOSITY_SUMMARY);
+        this.exclude = exclude.orElse("");
     }
 
     @Override
@@ -32,16 +62,62 @@ public class RedmineFileArtifactPlanConfig extends ArtifactPlanConfig {
         return destination;
     }
 
+    public String getVerbosity() {
+        return verbosity;
+    }
+
+    @Override
+    public String getExclude() {
+        return exclude;
+    }
+
+    @Override
+    public boolean isVerbose() {
+        return VERBOSITY_VERBOSE.equalsIgnoreCase(verbosity);
+    }
+
+    @Override
+    public ValidationResult validate() {
+        ValidationResult result = super.validate();
+        if (verbosity != null && !verbosity.isEmpty() && !VERBOSITY_SUMMARY.equalsIgnoreCase(verbosity) && !isVerbose()) {
+            result.addError("Verbosity", String.format("Verbosity must be `%s` or `%s`.", VERBOSITY_SUMMARY, VERBOSITY_VERBOSE));
+        }
+        validatePatterns(result, "Source", source);
+        validatePatterns(result, "Exclude", exclude);
+        validateDestination(result);
+        return result;
+    }
+
+    private void validateDestination(ValidationResult result) {
+        try {
+            DestinationTemplate template = DestinationTemplate.compile(destination);
+            new SourceMatcher(SourceMatcher.split(source), Collections.emptyList()).verify(template);
+        } catch (PatternSyntaxException | InvalidPathException e) {
+            // The source is reported by validatePatterns
+        } catch (IllegalArgumentException e) {
+            result.addError("Destination", e.getMessage());
+        }
+    }
+
+    private void validatePatterns(ValidationResult result, String key, String patterns) {
+        try {
+            new SourceMatcher(SourceMatcher.split(patterns), Collections.emptyList());
+        } catch (PatternSyntaxException | InvalidPathException e) {
+            result.addError(key, String.format("%s contains an invalid pattern: %s", key, e.getMessage()));
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         RedmineFileArtifactPlanConfig that = (RedmineFileArtifactPlanConfig) o;
-        return Objects.equals(source, that.source) && Objects.equals(destination, that.destination);
+        return Objects.equals(source, that.source) && Objects.equals(destination, that.destination)
+                && Objects.equals(verbosity, that.verbosity) && Objects.equals(exclude, that.exclude);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(source, destination);
+        return Objects.hash(source, destination, verbosity, exclude);
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link Span} is a timed operation of a {@link Tracer}. Spans form a tree, a child span is
+ * created with {@link #child(String)}. The span is finished by {@link #close()}, so it can be used
+ * in a try-with-resources block.
+ */
+public class Span implements AutoCloseable {
+
+  /**
+   * The {@link Span} of a disabled {@link Tracer}, it neither records attributes nor children.
+   */
+  static final Span NOOP = new Span(null, 0, 0, "noop");
+
+  private final Tracer              tracer;
+  private final long                id;
+  private final long                parentId;
+  private final String              name;
+  private final String              thread;
+  private final long                startMicros;
+  private final long                startNanos;
+  private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+  private long durationNanos = -1;
+
+  /**
+   * Constructs an instance of {@link Span}.
+   *
+   * @param tracer
+   * @param id
+   * @param parentId
+   * @param name
+   */
+  Span(Tracer tracer, long id, long parentId, String name) {
+    this.tracer = tracer;
+    this.id = id;
+    this.parentId = parentId;
+    this.name = name;
+    this.thread = Thread.currentThread().getName();
+    this.startMicros = System.currentTimeMillis() * 1000;
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Creates a child span.
+   *
+   * @param childName
+   */
+  public Span child(String childName) {
+    return (tracer == null) ? this : tracer.newSpan(id, childName);
+  }
+
+  /**
+   * Sets an attribute of the span.
+   *
+   * @param key
+   * @param value
+   */
+  public Span attribute(String key, Object value) {
+    if (tracer == null) {
+      return this;
+    }
+    synchronized (attributes) {
+      attributes.put(key, value);
+    }
+    return this;
+  }
+
+  /**
+   * Finishes the span. Closing a span more than once has no effect.
+   */
+  @Override
+  public void close() {
+    if (tracer == null) {
+      return;
+    }
+    synchronized (attributes) {
+      if (durationNanos >= 0) {
+        return;
+      }
+      durationNanos = System.nanoTime() - startNanos;
+    }
+    tracer.finished(this);
+  }
+
+  /**
+   * Gets the span as map, used for the JSON line.
+   *
+   * @param traceId
+   */
+  Map<String, Object> toMap(String traceId) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("trace_id", traceId);
+    values.put("span_id", id);
+    if (parentId > 0) {
+      values.put("parent_id", parentId);
+    }
+    values.put("name", name);
+    values.put("thread", thread);
+    values.put("start_us", startMicros);
+    values.put("duration_us", durationNanos / 1000);
+    synchronized (attributes) {
+      if (!attributes.isEmpty()) {
+        values.put("attributes", new LinkedHashMap<>(attributes));
+      }
+    }
+    return values;
+  }
+}
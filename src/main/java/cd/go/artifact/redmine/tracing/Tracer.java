@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.tracing;
+
+import static cd.go.artifact.redmine.RedmineArtifactPlugin.LOG;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cd.go.artifact.redmine.utils.Settings;
+
+/**
+ * The {@link Tracer} records the span tree of a single publish or fetch. When the run is done, the
+ * finished spans are written as JSON lines to a file, one span per line, for the analysis with
+ * offline tools. Tracing is disabled by default, see {@link Settings#getTraceDir(String)}. A
+ * disabled tracer hands out a shared no-op span, so that no span is kept for a run.
+ */
+public class Tracer {
+
+  private static final Gson GSON = new Gson();
+
+  private final String      traceId = UUID.randomUUID().toString().replace("-", "");
+  private final AtomicLong  ids     = new AtomicLong();
+  private final Queue<Span> spans   = new ConcurrentLinkedQueue<>();
+  private final boolean     enabled = Settings.isTraceEnabled();
+  private final Span        root;
+
+  /**
+   * Constructs an instance of {@link Tracer}.
+   *
+   * @param name
+   */
+  public Tracer(String name) {
+    this.root = enabled ? newSpan(0, name) : Span.NOOP;
+  }
+
+  /**
+   * Gets the root {@link Span}.
+   */
+  public final Span getRoot() {
+    return root;
+  }
+
+  /**
+   * Finishes the root span and writes all finished spans to the trace directory of the working
+   * directory. Nothing is written if tracing is disabled.
+   *
+   * @param workingDir
+   */
+  public final void write(String workingDir) {
+    root.close();
+    if (!enabled) {
+      return;
+    }
+
+    Path directory = Settings.getTraceDir(workingDir);
+
+    Path file = directory.resolve(String.format("redmine-trace-%s.jsonl", traceId));
+    try {
+      Files.createDirectories(directory);
+      try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+        for (Span span : spans) {
+          writer.write(GSON.toJson(span.toMap(traceId)));
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn(String.format("Couldn't write the trace %s: %s", file, e.getMessage()));
+    }
+  }
+
+  /**
+   * Creates a new span.
+   *
+   * @param parentId
+   * @param name
+   */
+  final Span newSpan(long parentId, String name) {
+    return new Span(this, ids.incrementAndGet(), parentId, name);
+  }
+
+  /**
+   * Collects a finished span.
+   *
+   * @param span
+   */
+  final void finished(Span span) {
+    spans.add(span);
+  }
+}
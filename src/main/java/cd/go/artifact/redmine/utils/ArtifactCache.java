@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import static cd.go.artifact.redmine.RedmineArtifactPlugin.LOG;
+
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ArtifactCache} is a content addressed store of fetched files on the agent. A file is
+ * identified by the id of the Redmine attachment and its digest, so that the jobs of an agent
+ * fetching the same attachment download it once. A cached file is materialised by a hard link, or by
+ * a copy if the working directory is on another file system. The cached files are read-only, so
+ * that a job can't change the file of another job through a shared link.
+ *
+ * The index of the cache is replaced atomically and guarded by a file lock, so that a crash or a
+ * concurrent agent never corrupts it. The content files are only trusted if the index knows them
+ * with their size and modification time; files the index doesn't know are removed. The least
+ * recently used files are evicted beyond the maximum size.
+ */
+public class ArtifactCache {
+
+  private static final String INDEX       = "index.json";
+  private static final String LOCK        = "index.lock";
+  private static final String TEMP_PREFIX = ".tmp-";
+  private static final long   TEMP_AGE    = TimeUnit.HOURS.toMillis(1);
+
+  private static ArtifactCache instance;
+
+  private final Path directory;
+  private final long maxSize;
+
+  /**
+   * Constructs an instance of {@link ArtifactCache}.
+   *
+   * @param directory
+   * @param maxSize
+   */
+  public ArtifactCache(Path directory, long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Gets the {@link ArtifactCache} of the agent, or <code>null</code> if the cache is disabled.
+   */
+  public static synchronized ArtifactCache instance() {
+    if (instance == null && Settings.getCacheSize() > 0) {
+      instance = new ArtifactCache(Settings.getCacheDir(), Settings.getCacheSize());
+    }
+    return instance;
+  }
+
+  /**
+   * Materialises the cached file at the target. Returns <code>false</code> if the file isn't
+   * cached, or the cached file has been modified.
+   *
+   * @param file
+   * @param expected
+   * @param target
+   */
+  final boolean fetch(Redmine.ProjectFile file, FileDigest expected, Path target) {
+    String key = ArtifactCache.getKey(file, expected);
+    if (key == null || !Files.isDirectory(directory)) {
+      return false;
+    }
+
+    Path path = directory.resolve(key);
+    Path temp = target.resolveSibling("." + target.getFileName() + ".cache");
+    try {
+      Files.createDirectories(target.getParent());
+      ArtifactCache.delete(temp);
+      Entry[] copy = new Entry[1];
+      update(entries -> {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+          return false;
+        }
+        if (entry.size != file.filesize || !entry.isValid(path)) {
+          ArtifactCache.delete(path);
+          return true;
+        }
+        entry.accessed = System.currentTimeMillis();
+        entries.put(key, entry);
+        ArtifactCache.setReadOnly(path);
+        // Linked while the lock prevents the eviction of the file
+        if (!ArtifactCache.createLink(path, temp)) {
+          copy[0] = entry;
+        }
+        return true;
+      });
+      if (copy[0] != null && !copy(path, temp, copy[0])) {
+        ArtifactCache.delete(temp);
+      }
+      if (Files.exists(temp)) {
+        Redmine.move(temp, target);
+        return true;
+      }
+    } catch (IOException e) {
+      LOG.warn(String.format("Failed to fetch %s from the artifact cache %s: %s", file.filename, directory, e));
+    } finally {
+      try {
+        ArtifactCache.delete(temp);
+      } catch (IOException e) {
+        // The partial file is replaced by the download
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stores the verified file of the target in the cache. Files larger than the cache are skipped.
+   *
+   * @param file
+   * @param expected
+   * @param target
+   */
+  final void store(Redmine.ProjectFile file, FileDigest expected, Path target) {
+    String key = ArtifactCache.getKey(file, expected);
+    if (key == null || file.filesize > maxSize) {
+      return;
+    }
+
+    Path temp = directory.resolve(TEMP_PREFIX + UUID.randomUUID());
+    try {
+      Files.createDirectories(directory);
+      if (!ArtifactCache.createLink(target, temp)) {
+        Files.copy(target, temp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+      }
+      ArtifactCache.setReadOnly(temp);
+      update(entries -> {
+        Path path = directory.resolve(key);
+        Redmine.move(temp, path);
+        entries.remove(key);
+        entries.put(key, new Entry(key, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+        evict(entries);
+        return true;
+      });
+    } catch (IOException e) {
+      LOG.warn(String.format("Failed to store %s in the artifact cache %s: %s", file.filename, directory, e));
+    } finally {
+      try {
+        ArtifactCache.delete(temp);
+      } catch (IOException e) {
+        // Removed with the next eviction
+      }
+    }
+  }
+
+  /**
+   * Copies the cached file to the target, without holding the lock of the index, so that a large
+   * copy doesn't block the other fetches. Returns <code>false</code> if the file has been evicted or
+   * changed in the meantime.
+   *
+   * @param path
+   * @param target
+   * @param entry
+   */
+  private boolean copy(Path path, Path target, Entry entry) throws IOException {
+    try {
+      Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+    boolean[] unchanged = new boolean[1];
+    update(entries -> {
+      Entry current = entries.get(entry.key);
+      unchanged[0] = current != null && current.modified == entry.modified && current.isValid(path);
+      return false;
+    });
+    return unchanged[0];
+  }
+
+  /**
+   * Removes the least recently used files beyond the maximum size, and the files the index doesn't
+   * know.
+   *
+   * @param entries
+   */
+  private void evict(Map<String, Entry> entries) throws IOException {
+    long size = 0;
+    for (Entry entry : entries.values()) {
+      size += entry.size;
+    }
+
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (size > maxSize && iterator.hasNext()) {
+      Entry entry = iterator.next();
+      ArtifactCache.delete(directory.resolve(entry.key));
+      size -= entry.size;
+      iterator.remove();
+    }
+
+    long expired = System.currentTimeMillis() - TEMP_AGE;
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path path : stream) {
+        String name = path.getFileName().toString();
+        if (name.startsWith(TEMP_PREFIX) ? Files.getLastModifiedTime(path).toMillis() < expired
+            : !name.startsWith(INDEX) && !name.equals(LOCK) && !entries.containsKey(name)) {
+          ArtifactCache.delete(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Updates the index of the cache. The index is loaded and saved while the lock is held by the
+   * agent, the entries are ordered from the least to the most recently used.
+   *
+   * @param update
+   */
+  private synchronized boolean update(Update update) throws IOException {
+    Path index = directory.resolve(INDEX);
+    try (FileChannel channel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE)) {
+      FileLock lock = channel.lock();
+      try {
+        Map<String, Entry> entries = ArtifactCache.load(index);
+        if (!update.apply(entries)) {
+          return false;
+        }
+
+        Index content = new Index();
+        content.entries = new ArrayList<>(entries.values());
+        Path temp = index.resolveSibling(INDEX + ".tmp");
+        Files.write(temp, Redmine.GSON.toJson(content).getBytes(StandardCharsets.UTF_8));
+        Redmine.move(temp, index);
+        return true;
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  /**
+   * Loads the entries of the index, ordered by their last access. An unreadable index starts an
+   * empty cache.
+   *
+   * @param index
+   */
+  private static Map<String, Entry> load(Path index) {
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    if (!Files.exists(index)) {
+      return entries;
+    }
+    try {
+      Index content = Redmine.GSON.fromJson(new String(Files.readAllBytes(index), StandardCharsets.UTF_8), Index.class);
+      if (content != null && content.entries != null) {
+        content.entries.sort(Comparator.comparingLong(e -> e.accessed));
+        for (Entry entry : content.entries) {
+          if (entry != null && entry.key != null) {
+            entries.put(entry.key, entry);
+          }
+        }
+      }
+    } catch (IOException | JsonParseException e) {
+      LOG.warn(String.format("Discarding the unreadable artifact cache index %s: %s", index, e));
+    }
+    return entries;
+  }
+
+  /**
+   * Gets the key of the file, the attachment id with the expected or the reported digest. A file
+   * without digest isn't cached.
+   *
+   * @param file
+   * @param expected
+   */
+  private static String getKey(Redmine.ProjectFile file, FileDigest expected) {
+    String digest = (expected != null && expected.getSha256() != null) ? expected.getSha256() : file.digest;
+    if (file.id == null || digest == null || digest.isEmpty()) {
+      return null;
+    }
+    return (file.id + "-" + digest).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]", "_");
+  }
+
+  /**
+   * Makes the file read-only for everyone. The permissions belong to the file, so they apply to
+   * every link of the file.
+   *
+   * @param path
+   */
+  private static void setReadOnly(Path path) throws IOException {
+    if (!path.toFile().setWritable(false, false)) {
+      throw new IOException("Failed to make " + path + " read-only");
+    }
+  }
+
+  /**
+   * Deletes the file, if it exists. A read-only file is made writable first where the file system
+   * denies to delete it, e.g. on Windows.
+   *
+   * @param path
+   */
+  private static void delete(Path path) throws IOException {
+    try {
+      Files.deleteIfExists(path);
+    } catch (AccessDeniedException e) {
+      path.toFile().setWritable(true);
+      Files.deleteIfExists(path);
+    }
+  }
+
+  /**
+   * Creates the target as hard link of the source. Returns <code>false</code> if the file system
+   * doesn't support it, e.g. across file systems.
+   *
+   * @param source
+   * @param target
+   */
+  private static boolean createLink(Path source, Path target) throws IOException {
+    ArtifactCache.delete(target);
+    try {
+      Files.createLink(target, source);
+      return true;
+    } catch (IOException | UnsupportedOperationException e) {
+      return false;
+    }
+  }
+
+  /**
+   * An {@link Update} of the index entries, returns <code>false</code> if the index is unchanged.
+   */
+  @FunctionalInterface
+  private interface Update {
+
+    boolean apply(Map<String, Entry> entries) throws IOException;
+  }
+
+  /**
+   * The {@link Index} of the cache, persisted as JSON.
+   */
+  private static class Index {
+
+    private List<Entry> entries;
+  }
+
+  /**
+   * An {@link Entry} of the cache. The modification time detects a file that has been changed
+   * through a hard link of a working directory.
+   */
+  private static class Entry {
+
+    private String key;
+    private long   size;
+    private long   modified;
+    private long   accessed;
+
+    /**
+     * Constructs an instance of {@link Entry}.
+     *
+     * @param key
+     * @param size
+     * @param modified
+     */
+    private Entry(String key, long size, long modified) {
+      this.key = key;
+      this.size = size;
+      this.modified = modified;
+      this.accessed = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns <code>true</code> if the file is unchanged since it has been stored.
+     *
+     * @param path
+     */
+    private boolean isValid(Path path) throws IOException {
+      return Files.exists(path) && Files.size(path) == size && Files.getLastModifiedTime(path).toMillis() == modified;
+    }
+  }
+}
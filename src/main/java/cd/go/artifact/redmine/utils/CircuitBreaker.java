@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import static cd.go.artifact.redmine.RedmineArtifactPlugin.LOG;
+
+import java.io.IOException;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+
+/**
+ * The {@link CircuitBreaker} protects a Redmine host from requests while it is failing. After a
+ * number of consecutive failures the circuit opens and requests fail fast for a cool-down period.
+ * Afterwards a single request is allowed to probe the host: if it succeeds the circuit closes,
+ * otherwise it opens again.
+ */
+public class CircuitBreaker {
+
+  /**
+   * The {@link State} of the circuit.
+   */
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final String url;
+  private final int    threshold;
+  private final long   coolDownMillis;
+
+  private State   state = State.CLOSED;
+  private int     failures;
+  private long    openedAt;
+  private boolean probing;
+
+  /**
+   * Constructs an instance of {@link CircuitBreaker}.
+   *
+   * @param url
+   * @param threshold
+   * @param coolDownMillis
+   */
+  public CircuitBreaker(String url, int threshold, long coolDownMillis) {
+    this.url = url;
+    this.threshold = threshold;
+    this.coolDownMillis = coolDownMillis;
+  }
+
+  /**
+   * Gets the current {@link State}.
+   */
+  public final synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Checks whether a request is allowed. Throws an {@link OpenException} while the circuit is open.
+   *
+   * @param console
+   */
+  public final synchronized void acquire(ConsoleLogger console) throws OpenException {
+    if (state == State.OPEN) {
+      long remaining = openedAt + coolDownMillis - System.currentTimeMillis();
+      if (remaining > 0) {
+        throw new OpenException(url, remaining);
+      }
+      change(State.HALF_OPEN, console);
+    }
+    if (state == State.HALF_OPEN) {
+      if (probing) {
+        throw new OpenException(url, 0);
+      }
+      probing = true;
+    }
+  }
+
+  /**
+   * Records a successful request.
+   *
+   * @param console
+   */
+  public final synchronized void success(ConsoleLogger console) {
+    failures = 0;
+    probing = false;
+    if (state != State.CLOSED) {
+      change(State.CLOSED, console);
+    }
+  }
+
+  /**
+   * Records a failed request. Only transient failures of the host are counted, a rejected request
+   * proves that the host is available.
+   *
+   * @param error
+   * @param console
+   */
+  public final synchronized void failure(IOException error, ConsoleLogger console) {
+    if (!RetryPolicy.isRetryable(error)) {
+      success(console);
+      return;
+    }
+
+    failures++;
+    probing = false;
+    if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+      openedAt = System.currentTimeMillis();
+      change(State.OPEN, console);
+    }
+  }
+
+  /**
+   * Changes the state and logs the transition.
+   *
+   * @param newState
+   * @param console
+   */
+  private void change(State newState, ConsoleLogger console) {
+    String message = String.format("Circuit breaker of %s changed from %s to %s after %d failure(s)", url, state,
+        newState, failures);
+    state = newState;
+    LOG.warn(message);
+    if (newState == State.OPEN) {
+      console.error(message);
+    } else {
+      console.info(message);
+    }
+  }
+
+  /**
+   * The {@link OpenException} is thrown for requests that are rejected by an open circuit.
+   */
+  public static class OpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an instance of {@link OpenException}.
+     *
+     * @param url
+     * @param remaining
+     */
+    private OpenException(String url, long remaining) {
+      super(String.format("Redmine %s is unavailable, requests are suspended for %d ms", url, remaining));
+    }
+  }
+}
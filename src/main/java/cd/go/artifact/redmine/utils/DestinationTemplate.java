@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link DestinationTemplate} is a compiled destination of an artifact plan. The destination is
+ * parsed once into literal and group parts, the target name of each file is rendered in a single
+ * pass. The placeholders are:
+ *
+ * <ul>
+ * <li><code>$n</code> the group with the number n, all following digits are part of the number; a
+ * number starting with <code>0</code>, e.g. <code>$0</code>, is taken literally</li>
+ * <li><code>${n}</code> the group with the number n, e.g. <code>${1}0</code></li>
+ * <li><code>${name}</code> the named group <code>(?&lt;name&gt;...)</code> of the source</li>
+ * <li><code>$$</code> a literal <code>$</code></li>
+ * </ul>
+ *
+ * Any other <code>$</code> is taken literally. A group, that the source doesn't define, is an
+ * error. An optional group, that doesn't participate in the match, e.g. <code>(-rc)?</code>, is
+ * rendered as empty text.
+ */
+public class DestinationTemplate {
+
+  private final String   text;
+  private final String[] literals;
+  private final int[]    numbers;
+  private final String[] names;
+  private final int      capacity;
+
+  /**
+   * Constructs an instance of {@link DestinationTemplate}. The part at an index is either a literal,
+   * a group number starting with 1 or a group name.
+   *
+   * @param text
+   * @param literals
+   * @param numbers
+   * @param names
+   */
+  private DestinationTemplate(String text, String[] literals, int[] numbers, String[] names) {
+    this.text = text;
+    this.literals = literals;
+    this.numbers = numbers;
+    this.names = names;
+
+    int capacity = 0;
+    for (String literal : literals) {
+      capacity += (literal == null) ? 16 : literal.length();
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Renders the target name of the match.
+   *
+   * @param match
+   */
+  public final String render(PathMapper match) {
+    return render(match.getGroups());
+  }
+
+  /**
+   * Renders the target name with the groups. The builder is sized for the literals and a short
+   * value of each group.
+   *
+   * @param groups
+   */
+  final String render(Groups groups) {
+    if (literals.length == 1 && literals[0] != null) {
+      return literals[0];
+    }
+
+    StringBuilder target = new StringBuilder(capacity);
+    for (int index = 0; index < literals.length; index++) {
+      if (literals[index] != null) {
+        target.append(literals[index]);
+      } else if (names[index] != null) {
+        int group = groups.indexOf(names[index]);
+        if (group < 0) {
+          throw new IllegalArgumentException(
+              String.format("Destination `%s` refers to the group `%s`, the source has no such group", text, names[index]));
+        }
+        DestinationTemplate.append(target, groups.get(group));
+      } else {
+        if (numbers[index] > groups.size()) {
+          throw new IllegalArgumentException(String.format(
+              "Destination `%s` refers to the group %d, the source captures %d", text, numbers[index], groups.size()));
+        }
+        DestinationTemplate.append(target, groups.get(numbers[index] - 1));
+      }
+    }
+    return target.toString();
+  }
+
+  /**
+   * Appends the value of a group, a group that doesn't participate in the match is empty.
+   *
+   * @param target
+   * @param value
+   */
+  private static void append(StringBuilder target, String value) {
+    if (value != null) {
+      target.append(value);
+    }
+  }
+
+  /**
+   * Verifies that the groups of the template are captured by a pattern with the group names. Throws
+   * an {@link IllegalArgumentException} otherwise.
+   *
+   * @param groupNames
+   */
+  final void verify(List<String> groupNames) {
+    for (int index = 0; index < literals.length; index++) {
+      if (names[index] != null && !groupNames.contains(names[index])) {
+        throw new IllegalArgumentException(
+            String.format("Destination `%s` refers to the group `%s`, the source has no such group", text, names[index]));
+      } else if (numbers[index] > groupNames.size()) {
+        throw new IllegalArgumentException(String.format("Destination `%s` refers to the group %d, the source captures %d",
+            text, numbers[index], groupNames.size()));
+      }
+    }
+  }
+
+  /**
+   * Gets the destination.
+   */
+  @Override
+  public String toString() {
+    return text;
+  }
+
+  /**
+   * Compiles the destination. Throws an {@link IllegalArgumentException} if a placeholder is
+   * malformed.
+   *
+   * @param destination
+   */
+  public static DestinationTemplate compile(String destination) {
+    String text = (destination == null) ? "" : destination;
+    List<String> literals = new ArrayList<>();
+    List<Integer> numbers = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    StringBuilder literal = new StringBuilder();
+
+    int index = 0;
+    while (index < text.length()) {
+      char c = text.charAt(index++);
+      char next = (index < text.length()) ? text.charAt(index) : 0;
+      if (c != '$' || (next != '$' && next != '{' && (!Character.isDigit(next) || next == '0'))) {
+        literal.append(c);
+        continue;
+      } else if (next == '$') {
+        literal.append('$');
+        index++;
+        continue;
+      }
+
+      String group;
+      if (next == '{') {
+        int end = text.indexOf('}', index);
+        if (end < 0) {
+          throw new IllegalArgumentException(String.format("Destination `%s` has an unclosed `${`", text));
+        }
+        group = text.substring(index + 1, end);
+        index = end + 1;
+      } else {
+        int start = index;
+        while (index < text.length() && Character.isDigit(text.charAt(index))) {
+          index++;
+        }
+        group = text.substring(start, index);
+      }
+
+      if (literal.length() > 0) {
+        DestinationTemplate.add(literals, numbers, names, literal.toString(), 0, null);
+        literal.setLength(0);
+      }
+      if (DestinationTemplate.isNumber(group) && Integer.parseInt(group) > 0) {
+        DestinationTemplate.add(literals, numbers, names, null, Integer.parseInt(group), null);
+      } else if (DestinationTemplate.isName(group)) {
+        DestinationTemplate.add(literals, numbers, names, null, 0, group);
+      } else {
+        throw new IllegalArgumentException(String.format("Destination `%s` has an invalid group `%s`", text, group));
+      }
+    }
+    if (literal.length() > 0 || literals.isEmpty()) {
+      DestinationTemplate.add(literals, numbers, names, literal.toString(), 0, null);
+    }
+    return new DestinationTemplate(text, literals.toArray(new String[0]),
+        numbers.stream().mapToInt(Integer::intValue).toArray(), names.toArray(new String[0]));
+  }
+
+  /**
+   * Adds a part of the template, either a literal, a group number or a group name.
+   *
+   * @param literals
+   * @param numbers
+   * @param names
+   * @param literal
+   * @param number
+   * @param name
+   */
+  private static void add(List<String> literals, List<Integer> numbers, List<String> names, String literal, int number,
+      String name) {
+    literals.add(literal);
+    numbers.add(number);
+    names.add(name);
+  }
+
+  /**
+   * Returns <code>true</code> if the group is a number.
+   *
+   * @param group
+   */
+  private static boolean isNumber(String group) {
+    return !group.isEmpty() && group.length() < 10 && group.chars().allMatch(Character::isDigit);
+  }
+
+  /**
+   * Returns <code>true</code> if the group is a valid name of a regular expression group.
+   *
+   * @param group
+   */
+  private static boolean isName(String group) {
+    return !group.isEmpty() && Character.isLetter(group.charAt(0)) && group.chars().allMatch(Character::isLetterOrDigit);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The {@link Digests} is a utility to calculate and compare the digests of files, as reported by
+ * Redmine. Redmine reports MD5 digests up to version 4.1 and SHA-256 digests since version 4.2.
+ */
+public class Digests {
+
+  public static final String MD5    = "MD5";
+  public static final String SHA256 = "SHA-256";
+
+  private static final int    BUFFER_SIZE = 64 * 1024;
+  private static final char[] HEX      = "0123456789abcdef".toCharArray();
+
+  /**
+   * Constructs an instance of {@link Digests}.
+   */
+  private Digests() {}
+
+  /**
+   * Gets the algorithm of a digest reported by Redmine, or <code>null</code> if the digest is
+   * unknown.
+   *
+   * @param digest
+   */
+  public static String algorithmOf(String digest) {
+    if (digest == null) {
+      return null;
+    }
+    switch (digest.trim().length()) {
+      case 32:
+        return Digests.MD5;
+      case 64:
+        return Digests.SHA256;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Creates a new {@link MessageDigest} for the algorithm.
+   *
+   * @param algorithm
+   */
+  public static MessageDigest create(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("Unsupported digest " + algorithm, e);
+    }
+  }
+
+  /**
+   * Calculates the hex digest of a file.
+   *
+   * @param file
+   * @param algorithm
+   */
+  public static String compute(Path file, String algorithm) throws IOException {
+    MessageDigest digest = Digests.create(algorithm);
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+    }
+    return Digests.toHex(digest.digest());
+  }
+
+  /**
+   * Converts the bytes to a lower-case hex string.
+   *
+   * @param bytes
+   */
+  public static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link FileDigest} holds the size and the digests of a published file.
+ */
+public class FileDigest {
+
+  private final long   size;
+  private final String md5;
+  private final String sha256;
+
+  /**
+   * Constructs an instance of {@link FileDigest}.
+   *
+   * @param size
+   * @param md5
+   * @param sha256
+   */
+  public FileDigest(long size, String md5, String sha256) {
+    this.size = size;
+    this.md5 = md5;
+    this.sha256 = sha256;
+  }
+
+  /**
+   * Gets the {@link #size}.
+   */
+  public final long getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the {@link #md5}.
+   */
+  public final String getMd5() {
+    return md5;
+  }
+
+  /**
+   * Gets the {@link #sha256}.
+   */
+  public final String getSha256() {
+    return sha256;
+  }
+
+  /**
+   * Returns <code>true</code> if the digest reported by Redmine is known and equal to the digest of
+   * this file.
+   *
+   * @param digest
+   */
+  public final boolean matches(String digest) {
+    String algorithm = Digests.algorithmOf(digest);
+    String value = Digests.MD5.equals(algorithm) ? md5 : Digests.SHA256.equals(algorithm) ? sha256 : null;
+    return value != null && value.equalsIgnoreCase(digest.trim());
+  }
+
+  /**
+   * Returns <code>true</code> if the digest reported by Redmine can be verified with this file.
+   *
+   * @param digest
+   */
+  public final boolean canVerify(String digest) {
+    String algorithm = Digests.algorithmOf(digest);
+    return (Digests.MD5.equals(algorithm) && md5 != null) || (Digests.SHA256.equals(algorithm) && sha256 != null);
+  }
+
+  /**
+   * Gets the size and the known digests as map.
+   */
+  public final Map<String, Object> toMap() {
+    Map<String, Object> values = new LinkedHashMap<>();
+    values.put("size", size);
+    if (md5 != null) {
+      values.put("md5", md5);
+    }
+    if (sha256 != null) {
+      values.put("sha256", sha256);
+    }
+    return values;
+  }
+
+  /**
+   * Creates the {@link FileDigest} from a map of {@link #toMap()}, e.g. of the artifact metadata.
+   * Returns <code>null</code> if the map has no size.
+   *
+   * @param values
+   */
+  public static FileDigest fromMap(Map<?, ?> values) {
+    Object size = values.get("size");
+    if (!(size instanceof Number)) {
+      return null;
+    }
+    Object md5 = values.get("md5");
+    Object sha256 = values.get("sha256");
+    return new FileDigest(((Number) size).longValue(), (md5 == null) ? null : md5.toString(),
+        (sha256 == null) ? null : sha256.toString());
+  }
+}
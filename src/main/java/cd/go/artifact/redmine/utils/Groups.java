@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+/**
+ * The {@link Groups} are the captured groups of a match. The groups are appended per path segment
+ * and share the groups of the parent segments, so that the matches of a directory don't copy the
+ * groups captured above it.
+ */
+class Groups {
+
+  static final Groups EMPTY = new Groups(null, new String[0], new String[0]);
+
+  private final Groups   parent;
+  private final String[] values;
+  private final String[] names;
+  private final int      size;
+
+  /**
+   * Constructs an instance of {@link Groups}.
+   *
+   * @param parent
+   * @param values
+   * @param names
+   */
+  private Groups(Groups parent, String[] values, String[] names) {
+    this.parent = parent;
+    this.values = values;
+    this.names = names;
+    this.size = (parent == null) ? values.length : parent.size + values.length;
+  }
+
+  /**
+   * Gets the number of groups.
+   */
+  public final int size() {
+    return size;
+  }
+
+  /**
+   * Gets the group at the index, starting with 0.
+   *
+   * @param index
+   */
+  public final String get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Group " + (index + 1) + " of " + size);
+    }
+    Groups groups = this;
+    while (index < groups.size - groups.values.length) {
+      groups = groups.parent;
+    }
+    return groups.values[index - (groups.size - groups.values.length)];
+  }
+
+  /**
+   * Gets the index of the first group with the name, or -1 if no group has the name.
+   *
+   * @param name
+   */
+  public final int indexOf(String name) {
+    int index = (parent == null) ? -1 : parent.indexOf(name);
+    for (int offset = 0; index < 0 && offset < names.length; offset++) {
+      if (name.equals(names[offset])) {
+        index = size - values.length + offset;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Appends the groups of a segment, with the names of the groups. An unnamed group has the name
+   * <code>null</code>.
+   *
+   * @param values
+   * @param names
+   */
+  final Groups append(String[] values, String[] names) {
+    return (values.length == 0) ? this : new Groups(this, values, names);
+  }
+}
@@ -17,8 +17,6 @@ package cd.go.artifact.redmine.utils;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -26,9 +24,9 @@ import java.util.List;
  */
 public class PathMapper {
 
-  private final Path         root;
-  private final Path         path;
-  private final List<String> groups;
+  private final Path   root;
+  private final Path   path;
+  private final Groups groups;
 
   /**
    * Constructs an instance of {@link PathMapper}.
@@ -37,7 +35,7 @@ public class PathMapper {
    * @param path
    * @param groups
    */
-  PathMapper(Path root, Path path, List<String> groups) {
+  PathMapper(Path root, Path path, Groups groups) {
     this.root = root;
     this.path = path;
     this.groups = groups;
@@ -58,15 +56,21 @@ public class PathMapper {
   }
 
   /**
-   * Replaces the placeholder's $[NUMBER] with the group values.
+   * Gets the captured {@link Groups}.
+   */
+  final Groups getGroups() {
+    return groups;
+  }
+
+  /**
+   * Replaces the placeholders of the target with the group values, see {@link DestinationTemplate}.
+   * The target is compiled on each call, prefer {@link DestinationTemplate#render(PathMapper)} for
+   * many files.
    *
    * @param target
    */
   public String remap(String target) {
-    for (int index = 0; index < groups.size(); index++) {
-      target = target.replace("$" + (index + 1), groups.get(index));
-    }
-    return target;
+    return DestinationTemplate.compile(target).render(this);
   }
 
 
@@ -77,8 +81,6 @@ public class PathMapper {
    * @param sourceName
    */
   public static List<PathMapper> list(String workingDir, String sourceName) {
-    PathParser matcher = new PathParser(new File(workingDir).toPath());
-    matcher.process(Paths.get(sourceName), 0, Collections.emptyList());
-    return matcher.getMatches();
+    return SourceMatcher.compile(sourceName, null).list(new File(workingDir).toPath());
   }
 }
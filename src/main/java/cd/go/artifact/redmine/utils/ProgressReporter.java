@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+
+/**
+ * The {@link ProgressReporter} reports the progress of a publish to the console. Instead of a line
+ * per file, an aggregated line with the number of files, bytes, throughput and estimated time is
+ * written at most once per interval. At the end a summary table of the uploaded files is written.
+ *
+ * The files are counted as they are discovered, while the working directory is still walked. Until
+ * the walk is complete the totals are shown as lower bounds and no estimated time is given.
+ *
+ * In verbose mode the details of each file and the full summary table are written, otherwise only
+ * the slowest files are listed.
+ */
+class ProgressReporter {
+
+  private static final int    SLOWEST_FILES = 10;
+  private static final double MEGABYTE      = 1024 * 1024;
+
+  private final ConsoleLogger console;
+  private final boolean       verbose;
+  private final long          intervalNanos;
+  private final long          started;
+
+  private final AtomicInteger totalFiles = new AtomicInteger();
+  private final AtomicLong    totalBytes = new AtomicLong();
+  private final AtomicInteger files      = new AtomicInteger();
+  private final AtomicLong    bytes      = new AtomicLong();
+  private final AtomicLong    lastReport = new AtomicLong();
+  private final Queue<Entry>  entries;
+
+  private volatile boolean complete;
+
+  /**
+   * Constructs an instance of {@link ProgressReporter}.
+   *
+   * @param console
+   * @param verbose
+   * @param intervalMillis
+   */
+  ProgressReporter(ConsoleLogger console, boolean verbose, long intervalMillis) {
+    this.console = console;
+    this.verbose = verbose;
+    // Without verbose mode only the slowest files are kept, the fastest is dropped first
+    this.entries = verbose ? new ConcurrentLinkedQueue<>()
+        : new PriorityQueue<>(Comparator.comparingDouble(Entry::getThroughput).reversed());
+    this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    this.started = System.nanoTime();
+    this.lastReport.set(started);
+  }
+
+  /**
+   * Writes a detail message, only in verbose mode.
+   *
+   * @param message
+   */
+  final void detail(String message) {
+    if (verbose) {
+      console.info(message);
+    }
+  }
+
+  /**
+   * Records a discovered file, that is going to be uploaded.
+   *
+   * @param size
+   */
+  final void discovered(long size) {
+    totalFiles.incrementAndGet();
+    totalBytes.addAndGet(size);
+  }
+
+  /**
+   * Marks the discovery of the files as complete, so that the totals are final.
+   */
+  final void complete() {
+    complete = true;
+  }
+
+  /**
+   * Records an uploaded file.
+   *
+   * @param path
+   * @param size
+   * @param nanos
+   */
+  final void uploaded(Path path, long size, long nanos) {
+    Entry entry = new Entry(path, size, nanos);
+    if (verbose) {
+      entries.add(entry);
+    } else {
+      synchronized (entries) {
+        entries.add(entry);
+        if (entries.size() > SLOWEST_FILES) {
+          entries.poll();
+        }
+      }
+    }
+    done(size);
+  }
+
+  /**
+   * Records a file, that didn't need to be uploaded.
+   *
+   * @param size
+   */
+  final void skipped(long size) {
+    done(size);
+  }
+
+  /**
+   * Writes the final progress and the summary table.
+   */
+  final void summary() {
+    console.info(getProgress());
+
+    List<Entry> list;
+    synchronized (entries) {
+      list = new ArrayList<>(entries);
+    }
+    if (list.isEmpty()) {
+      return;
+    }
+    list.sort(Comparator.comparingDouble(Entry::getThroughput));
+
+    StringBuilder table = new StringBuilder();
+    table.append(verbose ? "Uploaded files:" : String.format("Slowest %d uploads:", list.size()));
+    table.append(String.format("%n%12s %10s %10s  %s", "Size", "Time", "MB/s", "File"));
+    for (Entry entry : list) {
+      table.append(String.format("%n%12s %9.1fs %10.2f  %s", ProgressReporter.formatBytes(entry.size),
+          entry.nanos / 1e9, entry.getThroughput(), entry.path));
+    }
+    console.info(table.toString());
+  }
+
+  /**
+   * Counts a finished file and writes the progress, if the interval has passed since the last
+   * report.
+   *
+   * @param size
+   */
+  private void done(long size) {
+    files.incrementAndGet();
+    bytes.addAndGet(size);
+
+    long now = System.nanoTime();
+    long last = lastReport.get();
+    if (now - last >= intervalNanos && lastReport.compareAndSet(last, now)) {
+      console.info(getProgress());
+    }
+  }
+
+  /**
+   * Gets the aggregated progress.
+   */
+  private String getProgress() {
+    long done = bytes.get();
+    long total = totalBytes.get();
+    double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+    double rate = done / MEGABYTE / seconds;
+    String more = complete ? "" : "+";
+    String eta = (done == 0 || !complete) ? "-" : ProgressReporter.formatSeconds((total - done) / (done / seconds));
+    return String.format("Progress: %d/%d%s files, %s of %s%s, %.2f MB/s, ETA %s", files.get(), totalFiles.get(), more,
+        ProgressReporter.formatBytes(done), ProgressReporter.formatBytes(total), more, rate, eta);
+  }
+
+  /**
+   * Formats a number of bytes.
+   *
+   * @param bytes
+   */
+  private static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    int unit = (int) (Math.log(bytes) / Math.log(1024));
+    return String.format("%.1f %sB", bytes / Math.pow(1024, unit), "KMGTPE".charAt(unit - 1));
+  }
+
+  /**
+   * Formats a duration in seconds.
+   *
+   * @param seconds
+   */
+  private static String formatSeconds(double seconds) {
+    long value = Math.max(0, Math.round(seconds));
+    return (value >= 3600) ? String.format("%dh %02dm", value / 3600, (value % 3600) / 60)
+        : String.format("%dm %02ds", value / 60, value % 60);
+  }
+
+  /**
+   * The {@link Entry} of an uploaded file.
+   */
+  private static class Entry {
+
+    private final Path path;
+    private final long size;
+    private final long nanos;
+
+    /**
+     * Constructs an instance of {@link Entry}.
+     *
+     * @param path
+     * @param size
+     * @param nanos
+     */
+    private Entry(Path path, long size, long nanos) {
+      this.path = path;
+      this.size = size;
+      this.nanos = nanos;
+    }
+
+    /**
+     * Gets the throughput in MB/s.
+     */
+    private double getThroughput() {
+      return size / MEGABYTE / Math.max(1e-9, nanos / 1e9);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link PublishedFile} is a file of a publish, as recorded in the artifact metadata: the id of
+ * the Redmine attachment with the size and digests of the file. The metadata of older publishes has
+ * neither.
+ */
+public class PublishedFile {
+
+  private final String     id;
+  private final FileDigest digest;
+
+  /**
+   * Constructs an instance of {@link PublishedFile}.
+   *
+   * @param id
+   * @param digest
+   */
+  public PublishedFile(String id, FileDigest digest) {
+    this.id = id;
+    this.digest = digest;
+  }
+
+  /**
+   * Gets the {@link #id} of the attachment, or <code>null</code> if unknown.
+   */
+  public final String getId() {
+    return id;
+  }
+
+  /**
+   * Gets the {@link #digest}, or <code>null</code> if unknown.
+   */
+  public final FileDigest getDigest() {
+    return digest;
+  }
+
+  /**
+   * Gets the id, size and digests as map.
+   */
+  public final Map<String, Object> toMap() {
+    Map<String, Object> values = new LinkedHashMap<>();
+    if (id != null) {
+      values.put("id", id);
+    }
+    if (digest != null) {
+      values.putAll(digest.toMap());
+    }
+    return values;
+  }
+
+  /**
+   * Creates the {@link PublishedFile} from a map of {@link #toMap()}, e.g. of the artifact metadata.
+   *
+   * @param values
+   */
+  public static PublishedFile fromMap(Map<?, ?> values) {
+    Object id = values.get("id");
+    return new PublishedFile((id == null) ? null : id.toString(), FileDigest.fromMap(values));
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+
+/**
+ * The {@link RangeDownload} downloads a large file in ranges. The ranges are fetched in parallel
+ * over the pooled connections of the {@link RedmineTransport} and written at their position into a
+ * preallocated partial file. Each completed range is recorded in a bitmap, that is persisted next to
+ * the partial file, so that an interrupted download resumes with the missing ranges. The digests
+ * are calculated once all ranges are complete.
+ *
+ * The first missing range is fetched alone: if Redmine ignores the range and sends the whole file,
+ * the file is complete after that request.
+ */
+class RangeDownload {
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+  private static final int           BUFFER_SIZE  = 256 * 1024;
+
+  private final Redmine     redmine;
+  private final RetryPolicy retry;
+  private final int         threads;
+  private final long        rangeSize;
+
+  /**
+   * Constructs an instance of {@link RangeDownload}.
+   *
+   * @param redmine
+   * @param retry
+   * @param threads
+   * @param rangeSize
+   */
+  RangeDownload(Redmine redmine, RetryPolicy retry, int threads, long rangeSize) {
+    this.redmine = redmine;
+    this.retry = retry;
+    this.threads = threads;
+    this.rangeSize = rangeSize;
+  }
+
+  /**
+   * Returns <code>true</code> if a file of the size is downloaded in parallel ranges.
+   *
+   * @param size
+   */
+  final boolean isParallel(long size) {
+    return threads > 1 && size >= 2 * rangeSize;
+  }
+
+  /**
+   * Downloads the file to the target. The partial file replaces the target, once the size and
+   * digest are verified. A failed download keeps the partial file and its bitmap for the next
+   * attempt, a file with a wrong digest is discarded.
+   *
+   * @param file
+   * @param url
+   * @param target
+   * @param expected
+   * @param console
+   */
+  final FileDigest download(Redmine.ProjectFile file, String url, Path target, FileDigest expected,
+      ConsoleLogger console) throws IOException {
+    Path part = target.resolveSibling("." + target.getFileName() + ".part");
+    Path bitmap = target.resolveSibling("." + target.getFileName() + ".ranges");
+    State state = State.load(bitmap, part, file, rangeSize);
+    if (state == null) {
+      Files.deleteIfExists(part);
+      state = new State(file, rangeSize);
+    } else {
+      console.info(String.format("Resuming the download of %s, %d of %d ranges are complete", file.filename,
+          state.ranges.cardinality(), state.getCount()));
+    }
+
+    try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      if (channel.size() != file.filesize) {
+        // Preallocate the file, the ranges are written at their position
+        channel.truncate(file.filesize);
+        channel.write(ByteBuffer.wrap(new byte[1]), file.filesize - 1);
+      }
+
+      List<Integer> missing = state.getMissing();
+      if (!missing.isEmpty() && fetch(state, missing.remove(0), file, url, channel, bitmap, console)) {
+        fetch(state, missing, file, url, channel, bitmap, console);
+      }
+    }
+
+    FileDigest digest = RangeDownload.digest(part);
+    try {
+      Redmine.verify(file, digest, expected);
+    } catch (IOException e) {
+      // The corrupted range is unknown, the next attempt starts over
+      Files.deleteIfExists(bitmap);
+      Files.deleteIfExists(part);
+      throw e;
+    }
+    Redmine.move(part, target);
+    Files.deleteIfExists(bitmap);
+    return digest;
+  }
+
+  /**
+   * Fetches the missing ranges with a pool of workers. Each worker takes the next missing range,
+   * until all ranges are fetched or a range has failed.
+   *
+   * @param state
+   * @param missing
+   * @param file
+   * @param url
+   * @param channel
+   * @param bitmap
+   * @param console
+   */
+  private void fetch(State state, List<Integer> missing, Redmine.ProjectFile file, String url, FileChannel channel,
+      Path bitmap, ConsoleLogger console) throws IOException {
+    if (missing.isEmpty()) {
+      return;
+    }
+
+    AtomicInteger next = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, missing.size()), RangeDownload::newThread);
+    try {
+      List<Future<?>> workers = new ArrayList<>();
+      for (int worker = 0; worker < Math.min(threads, missing.size()); worker++) {
+        workers.add(executor.submit(() -> {
+          for (int index = next.getAndIncrement(); index < missing.size() && !executor.isShutdown();
+              index = next.getAndIncrement()) {
+            fetch(state, missing.get(index), file, url, channel, bitmap, console);
+          }
+          return null;
+        }));
+      }
+      RangeDownload.await(workers, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Fetches a single range and records it as complete. Returns <code>false</code> if Redmine sent
+   * the whole file instead of the range.
+   *
+   * @param state
+   * @param range
+   * @param file
+   * @param url
+   * @param channel
+   * @param bitmap
+   * @param console
+   */
+  private boolean fetch(State state, int range, Redmine.ProjectFile file, String url, FileChannel channel,
+      Path bitmap, ConsoleLogger console) throws IOException {
+    long start = range * rangeSize;
+    long end = Math.min(file.filesize, start + rangeSize) - 1;
+    boolean partial = retry.execute(String.format("Download of %s, bytes %d-%d", file.filename, start, end),
+        count -> redmine.downloadRange(file, url, start, end, channel, console), console);
+    state.complete(partial ? range : -1, channel, bitmap);
+    return partial;
+  }
+
+  /**
+   * Waits until all workers are done. After the first failure the workers take no further range,
+   * but the ranges in flight are completed and recorded for the next attempt.
+   *
+   * @param workers
+   * @param executor
+   */
+  private static void await(List<Future<?>> workers, ExecutorService executor) throws IOException {
+    IOException failure = null;
+    try {
+      for (Future<?> worker : workers) {
+        try {
+          worker.get();
+        } catch (ExecutionException e) {
+          executor.shutdown();
+          if (failure == null) {
+            failure = (e.getCause() instanceof IOException) ? (IOException) e.getCause() : new IOException(e.getCause());
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Download has been interrupted", e);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Calculates the MD5 and SHA-256 digest of the complete file.
+   *
+   * @param path
+   */
+  private static FileDigest digest(Path path) throws IOException {
+    MessageDigest md5 = Digests.create(Digests.MD5);
+    MessageDigest sha256 = Digests.create(Digests.SHA256);
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long size = 0;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      for (int count = channel.read(buffer); count >= 0; count = channel.read(buffer)) {
+        buffer.flip();
+        md5.update(buffer.array(), 0, buffer.limit());
+        sha256.update(buffer.array(), 0, buffer.limit());
+        buffer.clear();
+        size += count;
+      }
+    }
+    return new FileDigest(size, Digests.toHex(md5.digest()), Digests.toHex(sha256.digest()));
+  }
+
+  /**
+   * Creates a daemon worker thread, so that a hanging download never blocks the shutdown of the
+   * agent.
+   *
+   * @param runnable
+   */
+  private static Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "redmine-download-" + THREAD_COUNT.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * The {@link State} of a download, persisted as JSON. The file is identified by the id, size and
+   * digest Redmine reports, the bitmap of a changed file is discarded.
+   */
+  private static class State {
+
+    private String id;
+    private long   size;
+    private long   rangeSize;
+    private String digest;
+    private long[] done;
+
+    private transient BitSet ranges;
+
+    /**
+     * Constructs an instance of {@link State}.
+     *
+     * @param file
+     * @param rangeSize
+     */
+    private State(Redmine.ProjectFile file, long rangeSize) {
+      this.id = file.id;
+      this.size = file.filesize;
+      this.rangeSize = rangeSize;
+      this.digest = file.digest;
+      this.ranges = new BitSet();
+    }
+
+    /**
+     * Gets the number of ranges.
+     */
+    private int getCount() {
+      return (int) ((size + rangeSize - 1) / rangeSize);
+    }
+
+    /**
+     * Gets the indexes of the missing ranges.
+     */
+    private synchronized List<Integer> getMissing() {
+      List<Integer> missing = new ArrayList<>();
+      for (int range = ranges.nextClearBit(0); range < getCount(); range = ranges.nextClearBit(range + 1)) {
+        missing.add(range);
+      }
+      return missing;
+    }
+
+    /**
+     * Records a complete range, or all ranges for -1. The written bytes are forced to the storage
+     * device before the bitmap is replaced, so that the bitmap never claims a range that is lost in
+     * a crash.
+     *
+     * @param range
+     * @param channel
+     * @param bitmap
+     */
+    private synchronized void complete(int range, FileChannel channel, Path bitmap) throws IOException {
+      if (range < 0) {
+        ranges.set(0, getCount());
+      } else {
+        ranges.set(range);
+      }
+      channel.force(false);
+
+      done = ranges.toLongArray();
+      Path temp = bitmap.resolveSibling(bitmap.getFileName() + ".tmp");
+      Files.write(temp, Redmine.GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+      Redmine.move(temp, bitmap);
+    }
+
+    /**
+     * Loads the persisted state of the file, or returns <code>null</code> if there is none, it is
+     * unreadable or it belongs to another file.
+     *
+     * @param bitmap
+     * @param part
+     * @param file
+     * @param rangeSize
+     */
+    private static State load(Path bitmap, Path part, Redmine.ProjectFile file, long rangeSize) {
+      if (!Files.exists(bitmap) || !Files.exists(part)) {
+        return null;
+      }
+      try {
+        State state = Redmine.GSON.fromJson(new String(Files.readAllBytes(bitmap), StandardCharsets.UTF_8), State.class);
+        if (state == null || state.done == null || !Objects.equals(state.id, file.id) || state.size != file.filesize
+            || state.rangeSize != rangeSize || !Objects.equals(state.digest, file.digest)) {
+          return null;
+        }
+        state.ranges = BitSet.valueOf(state.done);
+        return state;
+      } catch (IOException | JsonParseException e) {
+        return null;
+      }
+    }
+  }
+}
@@ -18,71 +18,352 @@ import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
 
 import cd.go.artifact.redmine.ConsoleLogger;
+import cd.go.artifact.redmine.events.Events;
+import cd.go.artifact.redmine.metrics.Metrics;
+import cd.go.artifact.redmine.tracing.Span;
 
 public class Redmine {
 
   public static final Gson GSON =
       new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES).serializeNulls().create();
 
+  private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
 
-  private final String url;
-  private final String key;
-  private final String projectId;
-  private final String versionId;
+  private final RedmineTransport transport;
+  private final RetryPolicy      retry;
+  private final String           url;
+  private final String           key;
+  private final String           projectId;
+  private final String           versionId;
 
   public Redmine(String url, String key, String projectId, String versionId) {
+    this(new RedmineTransport(), url, key, projectId, versionId);
+  }
+
+  public Redmine(RedmineTransport transport, String url, String key, String projectId, String versionId) {
+    this.transport = transport;
+    this.retry = new RetryPolicy();
     this.url = url;
     this.key = key;
     this.projectId = projectId;
     this.versionId = versionId;
   }
 
-  public void upload(String workingDir, String sourceFile, String targetFile, ConsoleLogger console)
+  /**
+   * Uploads all files matching the source to Redmine and links them to the version. The files are
+   * uploaded concurrently, see {@link Settings#getUploadThreads()}, while the working directory is
+   * walked. The details of each file are only written to the console in verbose mode.
+   *
+   * @param workingDir
+   * @param source
+   * @param destination
+   * @param verbose
+   * @param console
+   * @param span
+   */
+  public UploadReport upload(String workingDir, SourceMatcher source, DestinationTemplate destination, boolean verbose,
+      ConsoleLogger console, Span span) throws IOException {
+    span.attribute("source", source.toString()).attribute("destination", destination.toString());
+    UploadEngine engine = new UploadEngine(this, Settings.getUploadThreads(), retry, verbose);
+    Map<String, ProjectFile> existing;
+    try (Span list = span.child("list")) {
+      existing = retry.execute("Listing the version", count -> getVersionFiles(console), console);
+      list.attribute("files", existing.size());
+    } catch (IOException e) {
+      console.error(String.format("Couldn't list the files of the version %s: %s", this.versionId, e.getMessage()));
+      existing = Collections.emptyMap();
+    }
+    return engine.upload(source.iterator(Paths.get(workingDir)), destination, existing, console, span);
+  }
+
+  /**
+   * Downloads the files of the version into the directory. Each file is streamed into a temporary
+   * file next to the target, which replaces the target once the size and digest are verified. The
+   * expected digest of a file is optional, without it the digest reported by Redmine is verified.
+   * A file is resolved by the attachment id of the publish, or by the newest file of the name.
+   * A file of the cache is linked instead of downloaded, a downloaded file is added to the cache.
+   *
+   * @param files
+   * @param directory
+   * @param cache the cache of the agent, or <code>null</code>
+   * @param console
+   * @param span
+   */
+  public long download(Map<String, PublishedFile> files, Path directory, ArtifactCache cache, ConsoleLogger console,
+      Span span) throws IOException {
+    List<ProjectFile> existing;
+    try (Span list = span.child("list")) {
+      existing = retry.execute("Listing the version", count -> listVersionFiles(console), console);
+      list.attribute("files", existing.size());
+    }
+
+    RangeDownload ranges = new RangeDownload(this, retry, Settings.getDownloadThreads(), Settings.getDownloadRangeSize());
+    long bytes = 0;
+    int hits = 0;
+    long saved = 0;
+    for (Map.Entry<String, PublishedFile> entry : files.entrySet()) {
+      String name = entry.getKey();
+      FileDigest expected = (entry.getValue() == null) ? null : entry.getValue().getDigest();
+      ProjectFile file = Redmine.find(existing, name, (entry.getValue() == null) ? null : entry.getValue().getId());
+      if (file == null) {
+        throw new IOException(String.format("File `%s` is missing in the version %s", name, this.versionId));
+      }
+
+      Path target = Redmine.resolve(directory, name);
+      try (Span download = span.child("download").attribute("file", name)) {
+        long started = System.nanoTime();
+        if (cache != null && cache.fetch(file, expected, target)) {
+          download.attribute("bytes", file.filesize).attribute("cache", "hit");
+          bytes += file.filesize;
+          saved += file.filesize;
+          hits++;
+          console.info(String.format("Fetched %s from the cache, %d bytes in %d ms", name, file.filesize,
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+          continue;
+        }
+
+        FileDigest digest;
+        Files.createDirectories(target.getParent());
+        if (ranges.isParallel(file.filesize)) {
+          // Each range is retried on its own, a retry of the whole file would multiply the attempts
+          digest = ranges.download(file, getContentUrl(file), target, expected, console);
+        } else {
+          digest = retry.execute("Download of " + name, count -> {
+            download.attribute("attempts", count);
+            return downloadFile(file, target, expected, console);
+          }, console);
+        }
+        if (cache != null) {
+          cache.store(file, expected, target);
+          download.attribute("cache", "miss");
+        }
+        download.attribute("bytes", digest.getSize());
+        bytes += digest.getSize();
+        console.info(String.format("Fetched %s, %d bytes in %d ms", name, digest.getSize(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)));
+      }
+    }
+
+    if (cache != null) {
+      Metrics.get().count("cache.hits", hits);
+      Metrics.get().count("cache.misses", files.size() - hits);
+      Metrics.get().count("bytes.cached", saved);
+      span.attribute("cache.hits", hits).attribute("cache.misses", files.size() - hits).attribute("cache.saved", saved);
+      console.info(String.format("Artifact cache: %d hit(s), %d miss(es), %d bytes saved", hits, files.size() - hits,
+          saved));
+    }
+    return bytes;
+  }
+
+  /**
+   * Downloads a single file to the target with a single request. The MD5 and SHA-256 digests are
+   * calculated while the bytes are received, a file that doesn't match the expected or the reported
+   * digest is rejected.
+   *
+   * @param file
+   * @param target
+   * @param expected
+   * @param console
+   */
+  FileDigest downloadFile(ProjectFile file, Path target, FileDigest expected, ConsoleLogger console)
       throws IOException {
-    for (PathMapper match : PathMapper.list(workingDir, sourceFile)) {
-      AttachmentUpload upload = uploadFile(match, console);
-      if (upload == null || upload.upload == null || upload.upload.token == null
-          || upload.upload.token.trim().isEmpty()) {
-        console.error("Redmine didn't accept the file upload. Check API key, URL, artifact path...");
-      } else {
-        linkUploadToVersion(upload, match.remap(targetFile), console);
+    Path temp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".part");
+    try {
+      MessageDigest md5 = Digests.create(Digests.MD5);
+      MessageDigest sha256 = Digests.create(Digests.SHA256);
+      long size;
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        size = send("http.download", Events.download(), file.filename, "GET", getContentUrl(file), null,
+            Collections.emptyMap(), -1, null,
+            (status, input) -> Redmine.receive(Channels.newChannel(input), channel, 0, md5, sha256), console);
       }
+      Metrics.get().count("bytes.downloaded", size);
+
+      FileDigest digest = new FileDigest(size, Digests.toHex(md5.digest()), Digests.toHex(sha256.digest()));
+      Redmine.verify(file, digest, expected);
+      Redmine.move(temp, target);
+      return digest;
+    } finally {
+      Files.deleteIfExists(temp);
     }
   }
 
-  private AttachmentUpload uploadFile(PathMapper mapper, ConsoleLogger console) throws IOException {
-    String url = this.url + "/uploads.json";
-    console.info(String.format("Uploading %s to %s", mapper.getPath(), url));
+  /**
+   * Downloads the range of the file into the channel, at the position of the range. Returns
+   * <code>false</code> if Redmine ignored the range and sent the whole file, which has been written
+   * from the start of the channel.
+   *
+   * @param file
+   * @param url
+   * @param start
+   * @param end the last byte of the range
+   * @param channel
+   * @param console
+   */
+  boolean downloadRange(ProjectFile file, String url, long start, long end, FileChannel channel, ConsoleLogger console)
+      throws IOException {
+    Map<String, String> headers = Collections.singletonMap("Range", String.format("bytes=%d-%d", start, end));
+    return send("http.download", Events.download(), file.filename, "GET", url, null, headers, -1, null,
+        (status, input) -> {
+          boolean partial = (status == HttpURLConnection.HTTP_PARTIAL);
+          long expected = partial ? end - start + 1 : file.filesize;
+          long size = Redmine.receive(Channels.newChannel(input), channel, partial ? start : 0);
+          Metrics.get().count("bytes.downloaded", size);
+          if (size != expected) {
+            throw new IOException(String.format("Range %d-%d of %s ended after %d of %d bytes", start, end,
+                file.filename, size, expected));
+          }
+          return partial;
+        }, console);
+  }
+
+  /**
+   * Gets the URL to download the content of the file. Redmine reports the URL with the file, older
+   * versions don't.
+   *
+   * @param file
+   */
+  private String getContentUrl(ProjectFile file) {
+    if (file.contentUrl != null && !file.contentUrl.isEmpty()) {
+      return file.contentUrl;
+    }
+    return String.format("%s/attachments/download/%s/%s", this.url, file.id, file.filename);
+  }
+
+  /**
+   * Gets the files of the version, by file name. Redmine keeps several files of the same name in a
+   * version, e.g. of each run of a pipeline, the newest file of a name is returned.
+   *
+   * @param console
+   */
+  Map<String, ProjectFile> getVersionFiles(ConsoleLogger console) throws IOException {
+    Map<String, ProjectFile> files = new HashMap<>();
+    for (ProjectFile file : listVersionFiles(console)) {
+      files.merge(file.filename, file, Redmine::newest);
+    }
+    return files;
+  }
 
-    URLConnection connection = new URL(url).openConnection();
-    connection.setDoOutput(true);
-    connection.setRequestProperty("Content-Type", "application/octet-stream");
-    connection.setRequestProperty("X-Redmine-API-Key", this.key);
+  /**
+   * Lists all files of the version, including older files of the same name.
+   *
+   * @param console
+   */
+  List<ProjectFile> listVersionFiles(ConsoleLogger console) throws IOException {
+    List<ProjectFile> files = new ArrayList<>();
+    for (ProjectFile file : listFiles(console)) {
+      if (file.version != null && this.versionId.equals(file.version.id)) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Finds the file of the publish, by the attachment id or the newest file of the name.
+   *
+   * @param files
+   * @param name
+   * @param id the attachment id, or <code>null</code> if unknown
+   */
+  private static ProjectFile find(List<ProjectFile> files, String name, String id) {
+    ProjectFile newest = null;
+    for (ProjectFile file : files) {
+      if (id != null && id.equals(file.id)) {
+        return file;
+      } else if (name.equals(file.filename)) {
+        newest = Redmine.newest(newest, file);
+      }
+    }
+    return newest;
+  }
 
-    try (OutputStream output = connection.getOutputStream()) {
-      Files.copy(mapper.toFile().toPath(), output);
+  /**
+   * Returns the newer of both files, the file with the higher attachment id.
+   *
+   * @param file
+   * @param other
+   */
+  static ProjectFile newest(ProjectFile file, ProjectFile other) {
+    if (file == null || other == null) {
+      return (file == null) ? other : file;
+    }
+    try {
+      return (Long.parseLong(other.id) > Long.parseLong(file.id)) ? other : file;
+    } catch (NumberFormatException e) {
+      return (String.valueOf(other.id).compareTo(String.valueOf(file.id)) > 0) ? other : file;
     }
+  }
 
-    InputStream response = connection.getInputStream();
-    String uploadTokenJson = Redmine.getText(response);
+  /**
+   * Lists the files of the project.
+   *
+   * @param console
+   */
+  List<ProjectFile> listFiles(ConsoleLogger console) throws IOException {
+    String url = this.url + "/projects/" + this.projectId + "/files.json";
+    String json = send("http.list", Events.list(), url, "GET", url, null, -1, null, console);
+    ProjectFiles files = Redmine.parse(json, ProjectFiles.class);
+    return (files == null || files.files == null) ? Collections.emptyList() : files.files;
+  }
 
-    return Redmine.GSON.fromJson(uploadTokenJson, AttachmentUpload.class);
+  /**
+   * Uploads the file of the {@link PathMapper} to Redmine. The request body is streamed from the
+   * file channel with a fixed content length, so the {@link HttpURLConnection} doesn't buffer the
+   * whole file on the heap. The MD5 and SHA-256 digests are calculated while the bytes are sent.
+   *
+   * @param mapper
+   * @param console
+   */
+  AttachmentUpload uploadFile(PathMapper mapper, ConsoleLogger console) throws IOException {
+    String url = this.url + "/uploads.json";
+    Path file = mapper.toFile().toPath();
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      MessageDigest md5 = Digests.create(Digests.MD5);
+      MessageDigest sha256 = Digests.create(Digests.SHA256);
+      String uploadTokenJson = send("http.upload", Events.upload(), mapper.getPath().toString(), "POST", url,
+          "application/octet-stream", size,
+          output -> Redmine.transfer(channel, size, Channels.newChannel(output), md5, sha256), console);
+      Metrics.get().count("bytes.uploaded", size);
+
+      AttachmentUpload upload = Redmine.parse(uploadTokenJson, AttachmentUpload.class);
+      if (upload != null) {
+        upload.digest = new FileDigest(size, Digests.toHex(md5.digest()), Digests.toHex(sha256.digest()));
+      }
+      return upload;
+    }
   }
 
-  private void linkUploadToVersion(AttachmentUpload upload, String targetFile, ConsoleLogger console)
+  void linkUploadToVersion(AttachmentUpload upload, String targetFile, ConsoleLogger console)
       throws IOException {
     String description = String.format(Locale.getDefault(), "File generated on %s",
         new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.getDefault()).format(new Date()));
@@ -97,31 +378,230 @@ public class Redmine {
 
     // Link attachment to version
     String url = this.url + "/projects/" + this.projectId + "/files.json";
-    URLConnection connection = new URL(url).openConnection();
-    connection.setDoOutput(true);
-    connection.setRequestProperty("Content-Type", "application/json");
-    connection.setRequestProperty("X-Redmine-API-Key", this.key);
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    send("http.link", Events.link(), targetFile, "POST", url, "application/json", body.length,
+        output -> output.write(body), console);
+  }
+
+  /**
+   * Sends a request through the {@link CircuitBreaker} of the Redmine URL. The duration and errors
+   * are recorded in the {@link Metrics} with the name of the metric and as {@link Events.Http} for
+   * the flight recorder.
+   *
+   * @param metric
+   * @param event
+   * @param path
+   * @param method
+   * @param url
+   * @param contentType
+   * @param length
+   * @param body
+   * @param console
+   */
+  private String send(String metric, Events.Http event, String path, String method, String url, String contentType,
+      long length, RedmineTransport.Body body, ConsoleLogger console) throws IOException {
+    return send(metric, event, path, method, url, contentType, Collections.emptyMap(), length, body,
+        (status, input) -> IOUtils.toString(input, StandardCharsets.UTF_8), console);
+  }
+
+  /**
+   * Sends a request like {@link #send(String, Events.Http, String, String, String, String, long,
+   * RedmineTransport.Body, ConsoleLogger)} with additional headers and passes the response to the
+   * handler.
+   *
+   * @param metric
+   * @param event
+   * @param path
+   * @param method
+   * @param url
+   * @param contentType
+   * @param headers
+   * @param length
+   * @param body
+   * @param handler
+   * @param console
+   */
+  private <T> T send(String metric, Events.Http event, String path, String method, String url, String contentType,
+      Map<String, String> headers, long length, RedmineTransport.Body body, RedmineTransport.Handler<T> handler,
+      ConsoleLogger console) throws IOException {
+    CircuitBreaker breaker = transport.getCircuitBreaker(this.url);
+    breaker.acquire(console);
+    long started = System.nanoTime();
+    event.start(path, Math.max(0, length));
+    try {
+      T response = transport.send(method, url, this.key, contentType, headers, length, body, (status, input) -> {
+        event.setStatus(status);
+        return handler.handle(status, input);
+      });
+      breaker.success(console);
+      return response;
+    } catch (IOException e) {
+      if (e instanceof RedmineException) {
+        event.setStatus(((RedmineException) e).getStatus());
+      }
+      Metrics.get().count(metric + ".errors", 1);
+      breaker.failure(e, console);
+      throw e;
+    } catch (RuntimeException e) {
+      Metrics.get().count(metric + ".errors", 1);
+      breaker.failure(new IOException(e), console);
+      throw e;
+    } finally {
+      event.finish();
+      Metrics.get().timeSince(metric, started);
+    }
+  }
+
+  /**
+   * Parses a JSON response of Redmine.
+   *
+   * @param json
+   * @param type
+   */
+  private static <T> T parse(String json, Class<T> type) {
+    Events.Parse event = Events.parse();
+    event.begin();
+    try {
+      return Redmine.GSON.fromJson(json, type);
+    } finally {
+      event.finish(type.getSimpleName(), json.length());
+    }
+  }
 
-    console.info(String.format("Uploading %s to %s", json, url));
 
-    try (OutputStream output = connection.getOutputStream()) {
-      output.write(json.getBytes());
+  /**
+   * Transfers the bytes of the {@link FileChannel} to the target channel and updates the digests.
+   * The bytes have to pass the digests, so a single reused buffer is used instead of
+   * {@link FileChannel#transferTo}.
+   *
+   * @param channel
+   * @param size
+   * @param target
+   * @param digests
+   */
+  private static void transfer(FileChannel channel, long size, WritableByteChannel target, MessageDigest... digests)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+    long position = 0;
+    while (position < size) {
+      int count = channel.read(buffer, position);
+      if (count < 0) {
+        throw new IOException(String.format("Unexpected end of file after %d of %d bytes", position, size));
+      }
+      buffer.flip();
+      for (MessageDigest digest : digests) {
+        buffer.mark();
+        digest.update(buffer);
+        buffer.reset();
+      }
+      while (buffer.hasRemaining()) {
+        target.write(buffer);
+      }
+      buffer.clear();
+      position += count;
     }
+  }
 
-    InputStream response = connection.getInputStream();
-    console.info(Redmine.getText(response));
+  /**
+   * Receives the bytes of the source channel into the file channel and updates the digests. Like
+   * {@link #transfer(FileChannel, long, WritableByteChannel, MessageDigest...)} the bytes have to
+   * pass the digests, so a single reused buffer is written at the position of the file instead of
+   * {@link FileChannel#transferFrom}, that copies an arbitrary channel in small chunks. Returns the
+   * number of bytes received.
+   *
+   * @param source
+   * @param channel
+   * @param position the position of the first byte in the file
+   * @param digests
+   */
+  private static long receive(ReadableByteChannel source, FileChannel channel, long position,
+      MessageDigest... digests) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(TRANSFER_BUFFER_SIZE);
+    long size = 0;
+    while (source.read(buffer) >= 0) {
+      if (buffer.position() < buffer.capacity()) {
+        // Fill the buffer, to write large blocks
+        continue;
+      }
+      size += Redmine.write(buffer, channel, position + size, digests);
+    }
+    return size + Redmine.write(buffer, channel, position + size, digests);
   }
 
+  /**
+   * Writes the content of the buffer at the position of the file channel and updates the digests.
+   * Returns the number of bytes written.
+   *
+   * @param buffer
+   * @param channel
+   * @param position
+   * @param digests
+   */
+  private static int write(ByteBuffer buffer, FileChannel channel, long position, MessageDigest... digests)
+      throws IOException {
+    buffer.flip();
+    for (MessageDigest digest : digests) {
+      buffer.mark();
+      digest.update(buffer);
+      buffer.reset();
+    }
+    int count = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + count - buffer.remaining());
+    }
+    buffer.clear();
+    return count;
+  }
 
-  private static String getText(InputStream is) throws IOException {
-    StringBuilder response = new StringBuilder();
-    try (BufferedReader in = new BufferedReader(new InputStreamReader(is))) {
-      String inputLine;
-      while ((inputLine = in.readLine()) != null) {
-        response.append(inputLine);
+  /**
+   * Verifies the downloaded file against the expected digest and, if there is none, against the
+   * size and digest reported by Redmine.
+   *
+   * @param file
+   * @param digest
+   * @param expected
+   */
+  static void verify(ProjectFile file, FileDigest digest, FileDigest expected) throws IOException {
+    if (expected != null) {
+      if (expected.getSize() != digest.getSize() || (expected.getSha256() != null
+          ? !expected.getSha256().equalsIgnoreCase(digest.getSha256())
+          : expected.getMd5() != null && !expected.getMd5().equalsIgnoreCase(digest.getMd5()))) {
+        throw new IOException(String.format("Digest mismatch of %s, expected %s but received %s", file.filename,
+            expected.toMap(), digest.toMap()));
       }
+    } else if (file.filesize != digest.getSize() || (digest.canVerify(file.digest) && !digest.matches(file.digest))) {
+      throw new IOException(String.format("Digest mismatch of %s, Redmine reports %d bytes with %s but received %s",
+          file.filename, file.filesize, file.digest, digest.toMap()));
+    }
+  }
+
+  /**
+   * Moves the downloaded file to the target, atomically if the file system supports it.
+   *
+   * @param temp
+   * @param target
+   */
+  static void move(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Resolves the name of a file within the directory. A name that leaves the directory is rejected.
+   *
+   * @param directory
+   * @param name
+   */
+  private static Path resolve(Path directory, String name) throws IOException {
+    Path root = directory.toAbsolutePath().normalize();
+    Path target = root.resolve(name).normalize();
+    if (!target.startsWith(root) || target.equals(root)) {
+      throw new IOException(String.format("File `%s` is outside of the working directory", name));
     }
-    return response.toString();
+    return target;
   }
 
   /**
@@ -132,6 +612,8 @@ public class Redmine {
 
     Upload upload;
 
+    transient FileDigest digest;
+
     static class Upload {
 
       String token;
@@ -157,4 +639,32 @@ public class Redmine {
       String description;
     }
   }
+
+  /**
+   * Redmine response for the files of a project:
+   * {"files":[{"id":12,"filename":"app.zip","filesize":1024,"digest":"...","version":{"id":3}}]}
+   */
+  public static class ProjectFiles {
+
+    List<ProjectFile> files;
+  }
+
+  /**
+   * A file of a project.
+   */
+  public static class ProjectFile {
+
+    String  id;
+    String  filename;
+    long    filesize;
+    String  contentUrl;
+    String  digest;
+    Version version;
+
+    static class Version {
+
+      String id;
+      String name;
+    }
+  }
 }
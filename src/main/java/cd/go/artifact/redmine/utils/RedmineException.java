@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.io.IOException;
+
+/**
+ * The {@link RedmineException} is thrown if Redmine answers a request with an error status.
+ */
+public class RedmineException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int status;
+
+  /**
+   * Constructs an instance of {@link RedmineException}.
+   *
+   * @param status
+   * @param message
+   */
+  public RedmineException(int status, String message) {
+    super(String.format("Redmine responded with HTTP %d: %s", status, message));
+    this.status = status;
+  }
+
+  /**
+   * Gets the HTTP {@link #status}.
+   */
+  public final int getStatus() {
+    return status;
+  }
+}
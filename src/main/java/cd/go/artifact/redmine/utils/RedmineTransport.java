@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The {@link RedmineTransport} executes the HTTP requests of the {@link Redmine} clients. A single
+ * transport is shared by all clients of the {@link cd.go.artifact.redmine.RedmineClientFactory}.
+ *
+ * The connections are reused through the keep-alive cache of the {@link HttpURLConnection}: every
+ * response is read completely and closed, so the socket is returned to the cache instead of being
+ * dropped. The number of concurrent requests per host is limited, so that the cache is able to keep
+ * all connections of a host alive. Host names are resolved by the {@link HttpURLConnection}, with
+ * the address cache of the JVM.
+ *
+ * Every request has a connect and a read timeout. The transport also provides a
+ * {@link CircuitBreaker} per Redmine URL, shared by all clients of that URL.
+ */
+public class RedmineTransport {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final int maxConnectionsPerHost;
+  private final int connectTimeout;
+  private final int readTimeout;
+
+  private final Map<String, Semaphore>      hosts     = new ConcurrentHashMap<>();
+  private final Map<String, CircuitBreaker> breakers  = new ConcurrentHashMap<>();
+
+  private final AtomicLong    requests   = new AtomicLong();
+  private final AtomicLong    failures   = new AtomicLong();
+  private final AtomicLong    waits      = new AtomicLong();
+  private final AtomicInteger active     = new AtomicInteger();
+  private final AtomicInteger peakActive = new AtomicInteger();
+
+  /**
+   * Constructs an instance of {@link RedmineTransport}.
+   */
+  public RedmineTransport() {
+    this(Settings.getMaxConnectionsPerHost(), Settings.getConnectTimeoutMillis(), Settings.getReadTimeoutMillis());
+  }
+
+  /**
+   * Constructs an instance of {@link RedmineTransport}.
+   *
+   * @param maxConnectionsPerHost
+   * @param connectTimeout
+   * @param readTimeout
+   */
+  public RedmineTransport(int maxConnectionsPerHost, int connectTimeout, int readTimeout) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * Gets the {@link CircuitBreaker} of the Redmine URL.
+   *
+   * @param url
+   */
+  public final CircuitBreaker getCircuitBreaker(String url) {
+    return breakers.computeIfAbsent(url,
+        u -> new CircuitBreaker(u, Settings.getBreakerFailures(), Settings.getBreakerCoolDownSeconds() * 1000L));
+  }
+
+  /**
+   * Executes a request and returns the response body as text.
+   *
+   * @param method
+   * @param url
+   * @param apiKey
+   * @param contentType
+   * @param length
+   * @param body
+   */
+  public final String send(String method, String url, String apiKey, String contentType, long length, Body body)
+      throws IOException {
+    return send(method, url, apiKey, contentType, length, body,
+        (status, input) -> IOUtils.toString(input, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Executes a request and passes the response to the {@link Handler}. Error responses are thrown
+   * as {@link RedmineException}.
+   *
+   * @param method
+   * @param url
+   * @param apiKey
+   * @param contentType
+   * @param length the length of the body, or -1 for a request without body
+   * @param body
+   * @param handler
+   */
+  public final <T> T send(String method, String url, String apiKey, String contentType, long length, Body body,
+      Handler<T> handler) throws IOException {
+    return send(method, url, apiKey, contentType, Collections.emptyMap(), length, body, handler);
+  }
+
+  /**
+   * Executes a request with additional headers, e.g. a <code>Range</code>, and passes the response
+   * to the {@link Handler}. Error responses are thrown as {@link RedmineException}.
+   *
+   * @param method
+   * @param url
+   * @param apiKey
+   * @param contentType
+   * @param headers
+   * @param length the length of the body, or -1 for a request without body
+   * @param body
+   * @param handler
+   */
+  public final <T> T send(String method, String url, String apiKey, String contentType, Map<String, String> headers,
+      long length, Body body, Handler<T> handler) throws IOException {
+    URL location = new URL(url);
+    Semaphore permits = acquire(location);
+    int current = active.incrementAndGet();
+    peakActive.accumulateAndGet(current, Math::max);
+    requests.incrementAndGet();
+    try {
+      HttpURLConnection connection = (HttpURLConnection) location.openConnection();
+      try {
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Connection", "keep-alive");
+        connection.setRequestProperty("X-Redmine-API-Key", apiKey);
+        if (contentType != null) {
+          connection.setRequestProperty("Content-Type", contentType);
+        }
+        headers.forEach(connection::setRequestProperty);
+        if (length >= 0) {
+          connection.setDoOutput(true);
+          connection.setFixedLengthStreamingMode(length);
+          try (OutputStream output = connection.getOutputStream()) {
+            body.write(output);
+          }
+        }
+        return RedmineTransport.handle(connection, handler);
+      } catch (IOException e) {
+        // The state of the connection is unknown, it must not be reused
+        if (!(e instanceof RedmineException)) {
+          connection.disconnect();
+        }
+        throw e;
+      }
+    } catch (IOException | RuntimeException e) {
+      failures.incrementAndGet();
+      throw e;
+    } finally {
+      active.decrementAndGet();
+      permits.release();
+    }
+  }
+
+  /**
+   * Gets a snapshot of the {@link Statistics}.
+   */
+  public final Statistics getStatistics() {
+    return new Statistics(requests.get(), failures.get(), active.get(), peakActive.get(), waits.get(), hosts.size());
+  }
+
+  /**
+   * Acquires a permit for the host of the URL, waiting if the maximum number of concurrent
+   * connections is reached.
+   *
+   * @param location
+   */
+  private Semaphore acquire(URL location) throws IOException {
+    String host = location.getHost() + ":" + location.getPort();
+    Semaphore permits = hosts.computeIfAbsent(host, h -> new Semaphore(maxConnectionsPerHost, true));
+    try {
+      if (!permits.tryAcquire()) {
+        waits.incrementAndGet();
+        permits.acquire();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for a connection to " + host, e);
+    }
+    return permits;
+  }
+
+  /**
+   * Handles the response of the connection. The response is always read to the end and closed, so
+   * that the connection can be reused.
+   *
+   * @param connection
+   * @param handler
+   */
+  private static <T> T handle(HttpURLConnection connection, Handler<T> handler) throws IOException {
+    int status = connection.getResponseCode();
+    if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+      String message;
+      try (InputStream error = connection.getErrorStream()) {
+        message = (error == null) ? connection.getResponseMessage() : IOUtils.toString(error, StandardCharsets.UTF_8);
+      }
+      throw new RedmineException(status, message);
+    }
+
+    try (InputStream input = connection.getInputStream()) {
+      T result = handler.handle(status, input);
+      RedmineTransport.drain(input);
+      return result;
+    }
+  }
+
+  /**
+   * Reads the remaining bytes of the stream.
+   *
+   * @param input
+   */
+  private static void drain(InputStream input) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    while (input.read(buffer) >= 0) {
+      // skip the unread response
+    }
+  }
+
+  /**
+   * The {@link Body} writes the content of a request.
+   */
+  @FunctionalInterface
+  public interface Body {
+
+    void write(OutputStream output) throws IOException;
+  }
+
+  /**
+   * The {@link Handler} processes the content of a successful response.
+   */
+  @FunctionalInterface
+  public interface Handler<T> {
+
+    T handle(int status, InputStream input) throws IOException;
+  }
+
+  /**
+   * The {@link Statistics} of the transport.
+   */
+  public static class Statistics {
+
+    private final long requests;
+    private final long failures;
+    private final int  active;
+    private final int  peakActive;
+    private final long waits;
+    private final int  hosts;
+
+    /**
+     * Constructs an instance of {@link Statistics}.
+     *
+     * @param requests
+     * @param failures
+     * @param active
+     * @param peakActive
+     * @param waits
+     * @param hosts
+     */
+    private Statistics(long requests, long failures, int active, int peakActive, long waits, int hosts) {
+      this.requests = requests;
+      this.failures = failures;
+      this.active = active;
+      this.peakActive = peakActive;
+      this.waits = waits;
+      this.hosts = hosts;
+    }
+
+    /**
+     * Gets the total number of requests.
+     */
+    public final long getRequests() {
+      return requests;
+    }
+
+    /**
+     * Gets the number of failed requests.
+     */
+    public final long getFailures() {
+      return failures;
+    }
+
+    /**
+     * Gets the number of requests in progress.
+     */
+    public final int getActive() {
+      return active;
+    }
+
+    /**
+     * Gets the highest number of concurrent requests.
+     */
+    public final int getPeakActive() {
+      return peakActive;
+    }
+
+    /**
+     * Gets the number of requests that had to wait for a connection.
+     */
+    public final long getWaits() {
+      return waits;
+    }
+
+    /**
+     * Gets the number of hosts.
+     */
+    public final int getHosts() {
+      return hosts;
+    }
+
+    /**
+     * Returns a readable representation of the statistics.
+     */
+    @Override
+    public String toString() {
+      return String.format("requests=%d, failures=%d, active=%d, peak=%d, waits=%d, hosts=%d", requests, failures,
+          active, peakActive, waits, hosts);
+    }
+  }
+}
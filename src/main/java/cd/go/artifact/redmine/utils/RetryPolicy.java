@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileSystemException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+
+/**
+ * The {@link RetryPolicy} retries requests to Redmine that failed with a transient error: a server
+ * error (5xx), too many requests (429) or a network failure like a connection reset. The delay
+ * between the attempts grows exponentially, with a random jitter so that parallel uploads don't
+ * retry in lockstep.
+ */
+public class RetryPolicy {
+
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  private final int  attempts;
+  private final long delayMillis;
+  private final long maxDelayMillis;
+
+  /**
+   * Constructs an instance of {@link RetryPolicy}.
+   */
+  public RetryPolicy() {
+    this(Settings.getRetryAttempts(), Settings.getRetryDelayMillis(), Settings.getRetryMaxDelayMillis());
+  }
+
+  /**
+   * Constructs an instance of {@link RetryPolicy}.
+   *
+   * @param attempts
+   * @param delayMillis
+   * @param maxDelayMillis
+   */
+  public RetryPolicy(int attempts, long delayMillis, long maxDelayMillis) {
+    this.attempts = attempts;
+    this.delayMillis = delayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+  }
+
+  /**
+   * Executes the {@link Attempt} until it succeeds, fails with a permanent error or the number of
+   * attempts is exhausted.
+   *
+   * @param name
+   * @param attempt
+   * @param console
+   */
+  public final <T> T execute(String name, Attempt<T> attempt, ConsoleLogger console) throws IOException {
+    for (int count = 1;; count++) {
+      try {
+        return attempt.run(count);
+      } catch (IOException e) {
+        if (count >= attempts || !RetryPolicy.isRetryable(e)) {
+          throw e;
+        }
+        long delay = getDelay(count);
+        console.info(String.format("%s failed (attempt %d of %d): %s, retrying in %d ms", name, count, attempts,
+            e.getMessage(), delay));
+        RetryPolicy.sleep(delay);
+      }
+    }
+  }
+
+  /**
+   * Gets the delay before the next attempt: a random value up to the exponential backoff.
+   *
+   * @param count
+   */
+  final long getDelay(int count) {
+    long backoff = Math.min(maxDelayMillis, delayMillis << Math.min(count - 1, 30));
+    return (backoff / 2) + ThreadLocalRandom.current().nextLong((backoff / 2) + 1);
+  }
+
+  /**
+   * Returns <code>true</code> if the request failed with a transient error.
+   *
+   * @param e
+   */
+  public static boolean isRetryable(IOException e) {
+    if (e instanceof CircuitBreaker.OpenException) {
+      return false;
+    }
+    if (e instanceof RedmineException) {
+      int status = ((RedmineException) e).getStatus();
+      return status >= 500 || status == TOO_MANY_REQUESTS;
+    }
+    // Local files that can't be read won't succeed on a retry
+    if (e instanceof FileSystemException) {
+      return false;
+    }
+    return !(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException;
+  }
+
+  /**
+   * Waits for the delay.
+   *
+   * @param delay
+   */
+  private static void sleep(long delay) throws IOException {
+    try {
+      Thread.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a retry");
+    }
+  }
+
+  /**
+   * The {@link Attempt} of a request, the count starts with 1.
+   */
+  @FunctionalInterface
+  public interface Attempt<T> {
+
+    T run(int count) throws IOException;
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The {@link Settings} provides the tuning options of the plugin. The options are defined as
+ * system properties of the agent JVM, e.g. {@code -Dredmine.upload.threads=8}.
+ */
+public class Settings {
+
+  public static final String UPLOAD_THREADS       = "redmine.upload.threads";
+  public static final String CONNECTIONS_PER_HOST = "redmine.http.connections-per-host";
+  public static final String CLIENT_CACHE_SIZE    = "redmine.client.cache-size";
+  public static final String CLIENT_IDLE_SECONDS  = "redmine.client.idle-seconds";
+  public static final String RETRY_ATTEMPTS       = "redmine.retry.attempts";
+  public static final String RETRY_DELAY          = "redmine.retry.delay-ms";
+  public static final String RETRY_MAX_DELAY      = "redmine.retry.max-delay-ms";
+  public static final String CONNECT_TIMEOUT      = "redmine.http.connect-timeout-ms";
+  public static final String READ_TIMEOUT         = "redmine.http.read-timeout-ms";
+  public static final String BREAKER_FAILURES     = "redmine.breaker.failures";
+  public static final String BREAKER_COOL_DOWN    = "redmine.breaker.cool-down-seconds";
+  public static final String CONSOLE_QUEUE_SIZE   = "redmine.console.queue-size";
+  public static final String CONSOLE_OVERFLOW     = "redmine.console.overflow";
+  public static final String PROGRESS_INTERVAL    = "redmine.progress.interval-seconds";
+  public static final String METRICS_INTERVAL     = "redmine.metrics.interval-seconds";
+  public static final String GLOB_THREADS         = "redmine.glob.threads";
+  public static final String TRACE                = "redmine.trace";
+  public static final String TRACE_DIR            = "redmine.trace.dir";
+  public static final String DOWNLOAD_THREADS     = "redmine.download.threads";
+  public static final String DOWNLOAD_RANGE_SIZE  = "redmine.download.range-size-mb";
+  public static final String CACHE_DIR            = "redmine.cache.dir";
+  public static final String CACHE_SIZE           = "redmine.cache.size-mb";
+
+  private static final String DEFAULT_TRACE_DIR = ".redmine-trace";
+  private static final String DEFAULT_CACHE_DIR = ".redmine-cache";
+
+  private static final int DEFAULT_UPLOAD_THREADS    = 4;
+  private static final int DEFAULT_CLIENT_CACHE_SIZE = 16;
+  private static final int DEFAULT_CLIENT_IDLE       = 600;
+  private static final int DEFAULT_RETRY_ATTEMPTS    = 3;
+  private static final int DEFAULT_RETRY_DELAY       = 500;
+  private static final int DEFAULT_RETRY_MAX_DELAY   = 30000;
+  private static final int DEFAULT_CONNECT_TIMEOUT   = 30000;
+  private static final int DEFAULT_READ_TIMEOUT      = 300000;
+  private static final int DEFAULT_BREAKER_FAILURES  = 5;
+  private static final int DEFAULT_BREAKER_COOL_DOWN = 60;
+  private static final int DEFAULT_CONSOLE_QUEUE     = 1000;
+  private static final int DEFAULT_PROGRESS_INTERVAL = 10;
+  private static final int DEFAULT_METRICS_INTERVAL  = 300;
+  private static final int DEFAULT_GLOB_THREADS      = 1;
+  private static final int DEFAULT_DOWNLOAD_THREADS  = 4;
+  private static final int DEFAULT_DOWNLOAD_RANGE    = 8;
+  private static final int DEFAULT_CACHE_SIZE        = 1024;
+
+  /**
+   * Constructs an instance of {@link Settings}.
+   */
+  private Settings() {}
+
+  /**
+   * Gets the number of parallel uploads of a single publish.
+   */
+  public static int getUploadThreads() {
+    return Math.max(1, Settings.getInt(Settings.UPLOAD_THREADS, Settings.DEFAULT_UPLOAD_THREADS));
+  }
+
+  /**
+   * Gets the maximum number of concurrent connections to a single Redmine host. By default this is
+   * the size of the keep-alive cache of the JVM ({@code http.maxConnections}).
+   */
+  public static int getMaxConnectionsPerHost() {
+    int keepAlive = Settings.getInt("http.maxConnections", 5);
+    return Math.max(1, Settings.getInt(Settings.CONNECTIONS_PER_HOST, keepAlive));
+  }
+
+  /**
+   * Gets the maximum number of cached {@link Redmine} clients.
+   */
+  public static int getClientCacheSize() {
+    return Math.max(1, Settings.getInt(Settings.CLIENT_CACHE_SIZE, Settings.DEFAULT_CLIENT_CACHE_SIZE));
+  }
+
+  /**
+   * Gets the time in seconds an unused {@link Redmine} client is kept in the cache.
+   */
+  public static int getClientIdleSeconds() {
+    return Math.max(0, Settings.getInt(Settings.CLIENT_IDLE_SECONDS, Settings.DEFAULT_CLIENT_IDLE));
+  }
+
+  /**
+   * Gets the number of attempts of a request to Redmine that failed with a transient error.
+   */
+  public static int getRetryAttempts() {
+    return Math.max(1, Settings.getInt(Settings.RETRY_ATTEMPTS, Settings.DEFAULT_RETRY_ATTEMPTS));
+  }
+
+  /**
+   * Gets the initial delay in milliseconds between two attempts.
+   */
+  public static long getRetryDelayMillis() {
+    return Math.max(1, Settings.getInt(Settings.RETRY_DELAY, Settings.DEFAULT_RETRY_DELAY));
+  }
+
+  /**
+   * Gets the maximum delay in milliseconds between two attempts.
+   */
+  public static long getRetryMaxDelayMillis() {
+    return Math.max(1, Settings.getInt(Settings.RETRY_MAX_DELAY, Settings.DEFAULT_RETRY_MAX_DELAY));
+  }
+
+  /**
+   * Gets the timeout in milliseconds to establish a connection to Redmine.
+   */
+  public static int getConnectTimeoutMillis() {
+    return Math.max(0, Settings.getInt(Settings.CONNECT_TIMEOUT, Settings.DEFAULT_CONNECT_TIMEOUT));
+  }
+
+  /**
+   * Gets the timeout in milliseconds to wait for data from Redmine.
+   */
+  public static int getReadTimeoutMillis() {
+    return Math.max(0, Settings.getInt(Settings.READ_TIMEOUT, Settings.DEFAULT_READ_TIMEOUT));
+  }
+
+  /**
+   * Gets the number of consecutive failures, that opens the circuit breaker of a Redmine host.
+   */
+  public static int getBreakerFailures() {
+    return Math.max(1, Settings.getInt(Settings.BREAKER_FAILURES, Settings.DEFAULT_BREAKER_FAILURES));
+  }
+
+  /**
+   * Gets the time in seconds requests to a failing Redmine host are suspended.
+   */
+  public static int getBreakerCoolDownSeconds() {
+    return Math.max(0, Settings.getInt(Settings.BREAKER_COOL_DOWN, Settings.DEFAULT_BREAKER_COOL_DOWN));
+  }
+
+  /**
+   * Gets the maximum number of console log messages waiting for delivery.
+   */
+  public static int getConsoleQueueSize() {
+    return Math.max(1, Settings.getInt(Settings.CONSOLE_QUEUE_SIZE, Settings.DEFAULT_CONSOLE_QUEUE));
+  }
+
+  /**
+   * Returns <code>true</code> if console log messages are dropped when the queue is full. By
+   * default ({@code block}) the caller waits until the message can be queued.
+   */
+  public static boolean isConsoleDropOnOverflow() {
+    return "drop".equalsIgnoreCase(System.getProperty(Settings.CONSOLE_OVERFLOW, "block").trim());
+  }
+
+  /**
+   * Gets the minimum time in milliseconds between two progress reports of a publish.
+   */
+  public static long getProgressIntervalMillis() {
+    return Math.max(0, Settings.getInt(Settings.PROGRESS_INTERVAL, Settings.DEFAULT_PROGRESS_INTERVAL)) * 1000L;
+  }
+
+  /**
+   * Gets the interval in seconds the metrics are written to the plugin log, 0 disables the output.
+   */
+  public static long getMetricsIntervalSeconds() {
+    return Math.max(0, Settings.getInt(Settings.METRICS_INTERVAL, Settings.DEFAULT_METRICS_INTERVAL));
+  }
+
+  /**
+   * Gets the number of threads walking the working directory in parallel, 1 walks it with the
+   * thread of the publish.
+   */
+  public static int getGlobThreads() {
+    return Math.max(1, Settings.getInt(Settings.GLOB_THREADS, Settings.DEFAULT_GLOB_THREADS));
+  }
+
+  /**
+   * Gets the number of ranges of a single file, that are downloaded in parallel. 1 downloads each
+   * file with a single request.
+   */
+  public static int getDownloadThreads() {
+    return Math.max(1, Settings.getInt(Settings.DOWNLOAD_THREADS, Settings.DEFAULT_DOWNLOAD_THREADS));
+  }
+
+  /**
+   * Gets the size of a download range in bytes. Files smaller than two ranges are downloaded with a
+   * single request.
+   */
+  public static long getDownloadRangeSize() {
+    return Math.max(1, Settings.getInt(Settings.DOWNLOAD_RANGE_SIZE, Settings.DEFAULT_DOWNLOAD_RANGE)) * 1024L * 1024L;
+  }
+
+  /**
+   * Gets the directory of the artifact cache, a relative directory is resolved against the working
+   * directory of the agent.
+   */
+  public static Path getCacheDir() {
+    String dir = System.getProperty(Settings.CACHE_DIR);
+    return Paths.get((dir == null || dir.trim().isEmpty()) ? Settings.DEFAULT_CACHE_DIR : dir.trim()).toAbsolutePath();
+  }
+
+  /**
+   * Gets the maximum size of the artifact cache in bytes, 0 disables the cache.
+   */
+  public static long getCacheSize() {
+    return Math.max(0, Settings.getInt(Settings.CACHE_SIZE, Settings.DEFAULT_CACHE_SIZE)) * 1024L * 1024L;
+  }
+
+  /**
+   * Gets the directory the span traces are written to, or <code>null</code> if tracing is disabled.
+   * Tracing is enabled either by {@link #TRACE} or by an explicit {@link #TRACE_DIR}, a relative
+   * directory is resolved against the working directory of the job.
+   *
+   * @param workingDir
+   */
+  public static Path getTraceDir(String workingDir) {
+    if (!Settings.isTraceEnabled()) {
+      return null;
+    }
+    String dir = System.getProperty(Settings.TRACE_DIR);
+    return Paths.get(workingDir == null ? "" : workingDir)
+        .resolve((dir == null || dir.trim().isEmpty()) ? Settings.DEFAULT_TRACE_DIR : dir.trim());
+  }
+
+  /**
+   * Returns <code>true</code> if tracing is enabled, either by {@link #TRACE} or by an explicit
+   * {@link #TRACE_DIR}.
+   */
+  public static boolean isTraceEnabled() {
+    String dir = System.getProperty(Settings.TRACE_DIR);
+    return (dir != null && !dir.trim().isEmpty()) || Boolean.getBoolean(Settings.TRACE);
+  }
+
+  /**
+   * Gets the integer value of a system property, or the default value if the property is undefined
+   * or invalid.
+   *
+   * @param name
+   * @param defaultValue
+   */
+  static int getInt(String name, int defaultValue) {
+    String value = System.getProperty(name);
+    if (value == null || value.trim().isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+}
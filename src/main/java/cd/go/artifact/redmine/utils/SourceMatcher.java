@@ -0,0 +1,695 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import cd.go.artifact.redmine.events.Events;
+
+/**
+ * The {@link SourceMatcher} matches several include patterns, minus the exclude patterns, in a single
+ * walk of the working directory. A pattern is a relative path, each segment is a regular expression
+ * where <code>%</code> stands for <code>*</code>. The groups of the include pattern are captured
+ * for the destination. A directory is only listed if a pattern can still match below it, and an
+ * excluded directory is pruned with its whole subtree. A segment without regular expression
+ * characters is resolved directly, without listing the directory.
+ *
+ * The compiled segment patterns are cached, so that the plans of a pipeline share them. The matches
+ * can be iterated lazily, while the walk goes on. On large workspaces the subdirectories can be
+ * walked in parallel on a {@link ForkJoinPool}, see {@link Settings#getGlobThreads()}.
+ */
+public class SourceMatcher {
+
+  private static final int                        CACHE_SIZE = 1024;
+  private static final Map<String, Pattern>       PATTERNS   = new ConcurrentHashMap<>();
+  private static final Map<Integer, ForkJoinPool> POOLS      = new ConcurrentHashMap<>();
+  private static final String                     META       = "\\.[]{}()*+?^$|%";
+
+  private final String     text;
+  private final List<Glob> includes;
+  private final List<Glob> excludes;
+  private final int        parallelism;
+
+  /**
+   * Constructs an instance of {@link SourceMatcher}, that walks the working directory with the
+   * parallelism of {@link Settings#getGlobThreads()}.
+   *
+   * @param includes
+   * @param excludes
+   */
+  public SourceMatcher(List<String> includes, List<String> excludes) {
+    this(includes, excludes, Settings.getGlobThreads());
+  }
+
+  /**
+   * Constructs an instance of {@link SourceMatcher}. With a parallelism of 1 the working directory
+   * is walked by the calling thread.
+   *
+   * @param includes
+   * @param excludes
+   * @param parallelism
+   */
+  public SourceMatcher(List<String> includes, List<String> excludes, int parallelism) {
+    this.text = String.join(", ", includes);
+    this.includes = SourceMatcher.compile(includes);
+    this.excludes = SourceMatcher.compile(excludes);
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * Lists the files of the working directory, that match any include pattern and no exclude
+   * pattern. A file matching several include patterns is listed once, with the groups of the first
+   * pattern. The matches are ordered by path, also when the directories are walked in parallel.
+   *
+   * @param workingDir
+   */
+  public final List<PathMapper> list(Path workingDir) {
+    List<PathMapper> matches = new ArrayList<>();
+    if (parallelism > 1) {
+      Events.Glob event = Events.glob();
+      event.begin();
+      matches = SourceMatcher.getPool(parallelism).invoke(new Walk(workingDir, getStart(workingDir)));
+      event.finish(text, matches.size());
+    } else {
+      iterator(workingDir).forEachRemaining(matches::add);
+    }
+    return matches;
+  }
+
+  /**
+   * Iterates lazily over the matches of the working directory, in the order of {@link #list(Path)}.
+   * A directory is listed when the iteration reaches it, so that only the entries of the open
+   * directories are held in memory. In parallel mode the directories are walked up front.
+   *
+   * @param workingDir
+   */
+  public final Iterator<PathMapper> iterator(Path workingDir) {
+    return (parallelism > 1) ? list(workingDir).iterator() : new Matches(workingDir, getStart(workingDir));
+  }
+
+  /**
+   * Streams the matches of the working directory, see {@link #iterator(Path)}.
+   *
+   * @param workingDir
+   */
+  public final Stream<PathMapper> stream(Path workingDir) {
+    Spliterator<PathMapper> spliterator =
+        Spliterators.spliteratorUnknownSize(iterator(workingDir), Spliterator.ORDERED | Spliterator.NONNULL);
+    return StreamSupport.stream(spliterator, false);
+  }
+
+  /**
+   * Gets the {@link Directory} to start the walk with.
+   *
+   * @param workingDir
+   */
+  private Directory getStart(Path workingDir) {
+    List<Cursor> cursors = new ArrayList<>();
+    includes.forEach(glob -> cursors.add(new Cursor(glob, 0, Groups.EMPTY)));
+    List<Cursor> pruning = new ArrayList<>();
+    excludes.forEach(glob -> pruning.add(new Cursor(glob, 0, Groups.EMPTY)));
+    return new Directory(workingDir, null, cursors, pruning);
+  }
+
+  /**
+   * Matches an entry of a directory. Returns <code>null</code> if the entry is excluded, otherwise
+   * the entry with the match and the directory to walk below it, if any.
+   *
+   * @param root
+   * @param directory
+   * @param path
+   */
+  private static Entry match(Path root, Directory directory, Path path) {
+    String name = path.getFileName().toString();
+    Boolean isDirectory = null;
+
+    List<Cursor> pruning = new ArrayList<>();
+    for (Cursor cursor : directory.pruning) {
+      if (cursor.getSegment().match(name, cursor.groups) == null) {
+        continue;
+      }
+      if (cursor.isLast()) {
+        return null;
+      } else if (isDirectory == null ? (isDirectory = SourceMatcher.isDirectory(path)) : isDirectory) {
+        pruning.add(cursor.next(cursor.groups));
+      }
+    }
+
+    Path relative = (directory.relative == null) ? Paths.get(name) : directory.relative.resolve(name);
+    List<Cursor> cursors = new ArrayList<>();
+    PathMapper match = null;
+    for (Cursor cursor : directory.cursors) {
+      Groups groups = cursor.getSegment().match(name, cursor.groups);
+      if (groups == null) {
+        continue;
+      }
+      if (cursor.isLast()) {
+        if (match == null) {
+          match = new PathMapper(root, relative, groups);
+        }
+      } else if (isDirectory == null ? (isDirectory = SourceMatcher.isDirectory(path)) : isDirectory) {
+        cursors.add(cursor.next(groups));
+      }
+    }
+    return new Entry(match, cursors.isEmpty() ? null : new Directory(path, relative, cursors, pruning));
+  }
+
+  /**
+   * Gets the entries of the directory to match. If all segments are literals, the entries are
+   * resolved directly, otherwise the directory is listed. The entries are sorted by name.
+   *
+   * @param directory
+   * @param cursors
+   */
+  private static List<Path> getEntries(Path directory, List<Cursor> cursors) {
+    List<Path> entries = new ArrayList<>();
+    if (cursors.stream().allMatch(cursor -> cursor.getSegment().literal != null)) {
+      for (Cursor cursor : cursors) {
+        Path path = directory.resolve(cursor.getSegment().literal);
+        if (!entries.contains(path) && Files.exists(path)) {
+          entries.add(path);
+        }
+      }
+    } else {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        stream.forEach(entries::add);
+      } catch (IOException e) {
+        return entries;
+      }
+    }
+    entries.sort(Comparator.comparing(path -> path.getFileName().toString()));
+    return entries;
+  }
+
+  /**
+   * Returns <code>true</code> if the entry is a directory. The attributes are read with a separate
+   * lookup, only for the entries a pattern has to descend into.
+   *
+   * @param path
+   */
+  private static boolean isDirectory(Path path) {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class).isDirectory();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Gets the shared {@link ForkJoinPool} of the parallelism. A pool is never shut down, so that a
+   * change of the parallelism doesn't break a walk of another publish.
+   *
+   * @param parallelism
+   */
+  private static ForkJoinPool getPool(int parallelism) {
+    return POOLS.computeIfAbsent(parallelism, p -> new ForkJoinPool(p, forkJoinPool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+      thread.setName("redmine-glob-" + p + "-" + thread.getPoolIndex());
+      return thread;
+    }, null, false));
+  }
+
+  /**
+   * Gets the include patterns, comma separated.
+   */
+  @Override
+  public String toString() {
+    return text;
+  }
+
+  /**
+   * Compiles the comma separated include and exclude patterns. The exclude patterns may be
+   * <code>null</code>.
+   *
+   * @param includes
+   * @param excludes
+   */
+  public static SourceMatcher compile(String includes, String excludes) {
+    return new SourceMatcher(SourceMatcher.split(includes), SourceMatcher.split(excludes));
+  }
+
+  /**
+   * Splits comma separated patterns. A comma within brackets, braces or parentheses, or escaped with
+   * a backslash, belongs to the pattern.
+   *
+   * @param patterns
+   */
+  public static List<String> split(String patterns) {
+    List<String> values = new ArrayList<>();
+    if (patterns == null) {
+      return values;
+    }
+
+    int depth = 0;
+    int start = 0;
+    for (int index = 0; index < patterns.length(); index++) {
+      char c = patterns.charAt(index);
+      if (c == '\\') {
+        index++;
+      } else if (c == '(' || c == '[' || c == '{') {
+        depth++;
+      } else if (c == ')' || c == ']' || c == '}') {
+        depth = Math.max(0, depth - 1);
+      } else if (c == ',' && depth == 0) {
+        SourceMatcher.add(values, patterns.substring(start, index));
+        start = index + 1;
+      }
+    }
+    SourceMatcher.add(values, patterns.substring(start));
+    return values;
+  }
+
+  /**
+   * Adds a trimmed pattern, if not empty.
+   *
+   * @param values
+   * @param pattern
+   */
+  private static void add(List<String> values, String pattern) {
+    if (!pattern.trim().isEmpty()) {
+      values.add(pattern.trim());
+    }
+  }
+
+  /**
+   * Compiles the patterns.
+   *
+   * @param patterns
+   */
+  private static List<Glob> compile(List<String> patterns) {
+    List<Glob> globs = new ArrayList<>();
+    for (String pattern : patterns) {
+      Path path = Paths.get(pattern);
+      Segment[] segments = new Segment[path.getNameCount()];
+      for (int index = 0; index < segments.length; index++) {
+        segments[index] = new Segment(path.getName(index).toString());
+      }
+      globs.add(new Glob(segments));
+    }
+    return globs;
+  }
+
+  /**
+   * Gets the compiled {@link Pattern} of a segment from the cache.
+   *
+   * @param segment
+   */
+  private static Pattern getPattern(String segment) {
+    Pattern pattern = PATTERNS.get(segment);
+    if (pattern == null) {
+      if (PATTERNS.size() >= SourceMatcher.CACHE_SIZE) {
+        PATTERNS.clear();
+      }
+      pattern = Pattern.compile("^" + segment.replace('%', '*') + "$");
+      PATTERNS.put(segment, pattern);
+    }
+    return pattern;
+  }
+
+  /**
+   * Gets the names of the capturing groups of a regular expression, in the order of the groups. An
+   * unnamed group has the name <code>null</code>. Java 8 has no API for the named groups, so the
+   * expression is scanned for <code>(?&lt;name&gt;</code>.
+   *
+   * @param regex
+   */
+  private static String[] getGroupNames(String regex) {
+    List<String> names = new ArrayList<>();
+    int classes = 0;
+    for (int index = 0; index < regex.length(); index++) {
+      char c = regex.charAt(index);
+      if (c == '\\') {
+        if (regex.startsWith("Q", index + 1)) {
+          int end = regex.indexOf("\\E", index + 2);
+          index = (end < 0) ? regex.length() : end + 1;
+        } else {
+          index++;
+        }
+      } else if (c == '[') {
+        classes++;
+      } else if (c == ']' && classes > 0) {
+        classes--;
+      } else if (c == '(' && classes == 0) {
+        if (!regex.startsWith("?", index + 1)) {
+          names.add(null);
+        } else if (regex.startsWith("?<", index + 1) && index + 3 < regex.length()
+            && Character.isLetter(regex.charAt(index + 3))) {
+          int end = regex.indexOf('>', index + 3);
+          names.add(regex.substring(index + 3, end));
+        }
+      }
+    }
+    return names.toArray(new String[0]);
+  }
+
+  /**
+   * Verifies that the {@link DestinationTemplate} only refers to groups, that every include pattern
+   * captures. Throws an {@link IllegalArgumentException} otherwise.
+   *
+   * @param template
+   */
+  public final void verify(DestinationTemplate template) {
+    for (Glob glob : includes) {
+      template.verify(glob.getGroupNames());
+    }
+  }
+
+  /**
+   * The {@link Directory} is a directory of the walk, with the patterns that can still match or
+   * exclude its entries.
+   */
+  private static class Directory {
+
+    private final Path         path;
+    private final Path         relative;
+    private final List<Cursor> cursors;
+    private final List<Cursor> pruning;
+
+    /**
+     * Constructs an instance of {@link Directory}.
+     *
+     * @param path
+     * @param relative
+     * @param cursors
+     * @param pruning
+     */
+    private Directory(Path path, Path relative, List<Cursor> cursors, List<Cursor> pruning) {
+      this.path = path;
+      this.relative = relative;
+      this.cursors = cursors;
+      this.pruning = pruning;
+    }
+  }
+
+  /**
+   * The {@link Entry} is a matched entry of a directory, with the match and the directory to walk
+   * below the entry. Both may be <code>null</code>.
+   */
+  private static class Entry {
+
+    private final PathMapper match;
+    private final Directory  child;
+
+    /**
+     * Constructs an instance of {@link Entry}.
+     *
+     * @param match
+     * @param child
+     */
+    private Entry(PathMapper match, Directory child) {
+      this.match = match;
+      this.child = child;
+    }
+  }
+
+  /**
+   * The {@link Walk} matches the entries of a directory and forks the walks of its subdirectories.
+   * The matches of the forks are joined in the order of the entries.
+   */
+  private static class Walk extends RecursiveTask<List<PathMapper>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Path      root;
+    private final Directory directory;
+
+    /**
+     * Constructs an instance of {@link Walk}.
+     *
+     * @param root
+     * @param directory
+     */
+    private Walk(Path root, Directory directory) {
+      this.root = root;
+      this.directory = directory;
+    }
+
+    /**
+     * Matches the entries of the directory.
+     */
+    @Override
+    protected List<PathMapper> compute() {
+      List<PathMapper> matches = new ArrayList<>();
+      List<Walk> forks = new ArrayList<>();
+      List<Integer> positions = new ArrayList<>();
+      for (Path path : SourceMatcher.getEntries(directory.path, directory.cursors)) {
+        Entry entry = SourceMatcher.match(root, directory, path);
+        if (entry == null) {
+          continue;
+        }
+        if (entry.match != null) {
+          matches.add(entry.match);
+        }
+        if (entry.child != null) {
+          Walk walk = new Walk(root, entry.child);
+          forks.add(walk);
+          positions.add(matches.size());
+          walk.fork();
+        }
+      }
+
+      // Insert from the last fork, so that the positions of the previous forks stay valid
+      for (int index = forks.size() - 1; index >= 0; index--) {
+        matches.addAll(positions.get(index), forks.get(index).join());
+      }
+      return matches;
+    }
+  }
+
+  /**
+   * The {@link Matches} walk the working directory depth-first, one entry at a time. The stack
+   * holds the remaining entries of the open directories.
+   */
+  private class Matches implements Iterator<PathMapper> {
+
+    private final Path                  root;
+    private final Deque<Directory>      directories = new ArrayDeque<>();
+    private final Deque<Iterator<Path>> entries     = new ArrayDeque<>();
+    private final Events.Glob           event       = Events.glob();
+
+    private PathMapper next;
+    private int        count;
+
+    /**
+     * Constructs an instance of {@link Matches}.
+     *
+     * @param root
+     * @param start
+     */
+    private Matches(Path root, Directory start) {
+      this.root = root;
+      this.event.begin();
+      open(start);
+    }
+
+    /**
+     * Returns <code>true</code> if there is another match.
+     */
+    @Override
+    public boolean hasNext() {
+      while (next == null && !directories.isEmpty()) {
+        if (!entries.peek().hasNext()) {
+          directories.pop();
+          entries.pop();
+          if (directories.isEmpty()) {
+            event.finish(text, count);
+          }
+          continue;
+        }
+
+        Entry entry = SourceMatcher.match(root, directories.peek(), entries.peek().next());
+        if (entry != null) {
+          next = entry.match;
+          if (entry.child != null) {
+            open(entry.child);
+          }
+        }
+      }
+      return next != null;
+    }
+
+    /**
+     * Gets the next match.
+     */
+    @Override
+    public PathMapper next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      PathMapper match = next;
+      next = null;
+      count++;
+      return match;
+    }
+
+    /**
+     * Opens a directory, its entries are listed when they are matched.
+     *
+     * @param directory
+     */
+    private void open(Directory directory) {
+      directories.push(directory);
+      entries.push(SourceMatcher.getEntries(directory.path, directory.cursors).iterator());
+    }
+  }
+
+  /**
+   * The {@link Glob} is a compiled pattern.
+   */
+  private static class Glob {
+
+    private final Segment[] segments;
+
+    /**
+     * Constructs an instance of {@link Glob}.
+     *
+     * @param segments
+     */
+    private Glob(Segment[] segments) {
+      this.segments = segments;
+    }
+
+    /**
+     * Gets the names of the groups the pattern captures, in the order of the groups. An unnamed
+     * group has the name <code>null</code>.
+     */
+    private List<String> getGroupNames() {
+      List<String> names = new ArrayList<>();
+      for (Segment segment : segments) {
+        names.addAll(Arrays.asList(segment.names));
+      }
+      return names;
+    }
+  }
+
+  /**
+   * The {@link Segment} is a compiled path segment, either a literal name or a {@link Pattern}.
+   */
+  private static class Segment {
+
+    private final String   literal;
+    private final Pattern  pattern;
+    private final String[] names;
+
+    /**
+     * Constructs an instance of {@link Segment}.
+     *
+     * @param segment
+     */
+    private Segment(String segment) {
+      boolean isLiteral = segment.chars().noneMatch(c -> SourceMatcher.META.indexOf(c) >= 0);
+      this.literal = isLiteral ? segment : null;
+      this.pattern = isLiteral ? null : SourceMatcher.getPattern(segment);
+      this.names = isLiteral ? new String[0] : SourceMatcher.getGroupNames(pattern.pattern());
+    }
+
+    /**
+     * Matches the name and returns the groups captured so far, extended by the groups of the match,
+     * or <code>null</code> if the name doesn't match. The captured groups share the groups of the
+     * parent directories.
+     *
+     * @param name
+     * @param groups
+     */
+    private Groups match(String name, Groups groups) {
+      if (literal != null) {
+        return literal.equals(name) ? groups : null;
+      }
+      Matcher matcher = pattern.matcher(name);
+      if (!matcher.matches()) {
+        return null;
+      } else if (matcher.groupCount() == 0) {
+        return groups;
+      }
+      String[] values = new String[matcher.groupCount()];
+      for (int index = 0; index < values.length; index++) {
+        values[index] = matcher.group(index + 1);
+      }
+      return groups.append(values, names);
+    }
+  }
+
+  /**
+   * The {@link Cursor} is the position of a {@link Glob} in the walk, with the groups captured so
+   * far.
+   */
+  private static class Cursor {
+
+    private final Glob   glob;
+    private final int    offset;
+    private final Groups groups;
+
+    /**
+     * Constructs an instance of {@link Cursor}.
+     *
+     * @param glob
+     * @param offset
+     * @param groups
+     */
+    private Cursor(Glob glob, int offset, Groups groups) {
+      this.glob = glob;
+      this.offset = offset;
+      this.groups = groups;
+    }
+
+    /**
+     * Gets the current {@link Segment}.
+     */
+    private Segment getSegment() {
+      return glob.segments[offset];
+    }
+
+    /**
+     * Returns <code>true</code> if the cursor is on the last segment.
+     */
+    private boolean isLast() {
+      return offset + 1 >= glob.segments.length;
+    }
+
+    /**
+     * Gets the cursor of the next segment.
+     *
+     * @param groups
+     */
+    private Cursor next(Groups groups) {
+      return new Cursor(glob, offset + 1, groups);
+    }
+  }
+}
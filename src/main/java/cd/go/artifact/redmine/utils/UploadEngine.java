@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+import cd.go.artifact.redmine.metrics.Metrics;
+import cd.go.artifact.redmine.tracing.Span;
+
+/**
+ * The {@link UploadEngine} publishes the matches of a publish in two stages, using a bounded pool
+ * of workers:
+ *
+ * <ol>
+ * <li>The upload stage sends the files concurrently to Redmine, while the matches are still
+ * discovered, and queues the upload tokens.</li>
+ * <li>The link stage drains the queue and links the uploads to the version, once all uploads have
+ * finished.</li>
+ * <li>The linked files are verified against the digests Redmine reports for the version.</li>
+ * </ol>
+ *
+ * The matches are consumed lazily, at most two files per worker are discovered ahead of the
+ * uploads. Uploads never wait for a link. If any upload fails, nothing is linked, so a failed publish
+ * doesn't leave a half-published version. Files that already exist in the version with the same
+ * name, size and digest are skipped. Requests that fail with a transient error are retried with the
+ * {@link RetryPolicy}. The results are collected in an {@link UploadReport}, the progress is
+ * reported with a {@link ProgressReporter}, each stage and file is traced as {@link Span}.
+ */
+class UploadEngine {
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final Redmine     redmine;
+  private final int         threads;
+  private final RetryPolicy retry;
+  private final boolean     verbose;
+
+  /**
+   * Constructs an instance of {@link UploadEngine}.
+   *
+   * @param redmine
+   * @param threads
+   * @param retry
+   * @param verbose
+   */
+  UploadEngine(Redmine redmine, int threads, RetryPolicy retry, boolean verbose) {
+    this.redmine = redmine;
+    this.threads = threads;
+    this.retry = retry;
+    this.verbose = verbose;
+  }
+
+  /**
+   * Uploads all matches and links them to the version. The matches are uploaded as they are
+   * iterated, the time spent iterating is recorded as glob time.
+   *
+   * @param matches
+   * @param destination
+   * @param existing
+   * @param console
+   * @param span
+   */
+  UploadReport upload(Iterator<PathMapper> matches, DestinationTemplate destination, Map<String, Redmine.ProjectFile> existing,
+      ConsoleLogger console, Span span) throws IOException {
+    UploadReport report = new UploadReport();
+    long started = System.nanoTime();
+    if (!matches.hasNext()) {
+      Metrics.get().timeSince("publish.glob", started);
+      Metrics.get().count("publish.files", 0);
+      return report;
+    }
+    long globNanos = System.nanoTime() - started;
+
+    ProgressReporter progress = new ProgressReporter(console, verbose, Settings.getProgressIntervalMillis());
+    BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, UploadEngine::newThread);
+    Semaphore permits = new Semaphore(threads * 2);
+    try {
+      try (Span stage = span.child("upload.stage")) {
+        int files = 0;
+        try (Span match = span.child("match")) {
+          while (true) {
+            started = System.nanoTime();
+            PathMapper next = matches.hasNext() ? matches.next() : null;
+            globNanos += System.nanoTime() - started;
+            if (next == null) {
+              break;
+            }
+
+            files++;
+            String target = destination.render(next);
+            progress.discovered(next.toFile().length());
+            UploadEngine.acquire(permits, 1);
+            executor.execute(() -> {
+              try {
+                upload(next, target, existing.get(target), queue, report, progress, console, stage);
+              } finally {
+                permits.release();
+              }
+            });
+          }
+          progress.complete();
+          Metrics.get().time("publish.glob", globNanos);
+          Metrics.get().count("publish.files", files);
+          match.attribute("matches", files).attribute("glob_us", globNanos / 1000);
+        }
+        UploadEngine.acquire(permits, threads * 2);
+        stage.attribute("files", files);
+        progress.summary();
+      }
+
+      List<Pending> pending = new ArrayList<>();
+      queue.drainTo(pending);
+      if (report.hasFailures()) {
+        console.error(String.format("%d upload(s) failed, no file has been linked to the version.",
+            report.getFailures().size()));
+        for (Pending upload : pending) {
+          report.failure(upload.path, upload.target, new IOException("Not linked, other uploads have failed"));
+        }
+        return report;
+      }
+
+      List<Pending> linked = Collections.synchronizedList(new ArrayList<>());
+      try (Span stage = span.child("link.stage").attribute("files", pending.size())) {
+        List<Future<?>> links = new ArrayList<>();
+        for (Pending upload : pending) {
+          links.add(executor.submit(() -> link(upload, linked, report, progress, console, stage)));
+        }
+        UploadEngine.await(links);
+      }
+      try (Span verify = span.child("verify")) {
+        verify.attribute("files", linked.size());
+        verify(linked, report, console);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return report;
+  }
+
+  /**
+   * Uploads a single file and queues the upload token for the link stage. Any error is recorded in
+   * the report.
+   *
+   * @param match
+   * @param target
+   * @param existing
+   * @param queue
+   * @param report
+   * @param progress
+   * @param console
+   * @param stage
+   */
+  private void upload(PathMapper match, String target, Redmine.ProjectFile existing, BlockingQueue<Pending> queue,
+      UploadReport report, ProgressReporter progress, ConsoleLogger console, Span stage) {
+    Span span = stage.child("upload").attribute("path", match.getPath().toString()).attribute("target", target);
+    try {
+      FileDigest unchanged = UploadEngine.getUnchanged(match, existing);
+      if (unchanged != null) {
+        progress.detail(String.format("Skipping %s, the version already contains an identical %s", match.getPath(), target));
+        report.skipped(match.getPath(), target, existing.id, unchanged);
+        progress.skipped(unchanged.getSize());
+        span.attribute("skipped", true);
+        return;
+      }
+
+      progress.detail(String.format("Uploading %s", match.getPath()));
+      long started = System.nanoTime();
+      Redmine.AttachmentUpload upload = retry.execute("Upload of " + match.getPath(), count -> {
+        span.attribute("attempts", count);
+        return redmine.uploadFile(match, console);
+      }, console);
+      if (upload != null && upload.digest != null) {
+        progress.uploaded(match.getPath(), upload.digest.getSize(), System.nanoTime() - started);
+        span.attribute("bytes", upload.digest.getSize());
+      }
+      if (upload == null || upload.upload == null || upload.upload.token == null
+          || upload.upload.token.trim().isEmpty()) {
+        console.error("Redmine didn't accept the file upload. Check API key, URL, artifact path...");
+        report.failure(match.getPath(), target, new IOException("Redmine didn't return an upload token"));
+      } else {
+        queue.add(new Pending(match.getPath(), target, upload));
+      }
+    } catch (Exception e) {
+      console.error(String.format("Failed to upload %s: %s", match.getPath(), e.getMessage()));
+      report.failure(match.getPath(), target, e);
+      span.attribute("error", String.valueOf(e));
+    } finally {
+      span.close();
+    }
+  }
+
+  /**
+   * Links an uploaded file to the version. Any error is recorded in the report. A retry first
+   * checks whether the previous attempt has linked the file, before it is linked again.
+   *
+   * @param upload
+   * @param linked
+   * @param report
+   * @param progress
+   * @param console
+   * @param stage
+   */
+  private void link(Pending upload, List<Pending> linked, UploadReport report, ProgressReporter progress,
+      ConsoleLogger console, Span stage) {
+    Span span = stage.child("link").attribute("target", upload.target);
+    try {
+      retry.execute("Link of " + upload.target, count -> {
+        span.attribute("attempts", count);
+        if (count == 1 || !isLinked(upload, console)) {
+          redmine.linkUploadToVersion(upload.upload, upload.target, console);
+        }
+        return null;
+      }, console);
+      progress.detail(String.format("Linked %s to the version", upload.target));
+      linked.add(upload);
+    } catch (Exception e) {
+      console.error(String.format("Failed to link %s: %s", upload.target, e.getMessage()));
+      report.failure(upload.path, upload.target, e);
+      span.attribute("error", String.valueOf(e));
+    } finally {
+      span.close();
+    }
+  }
+
+  /**
+   * Verifies the linked files against the size and digest Redmine reports for the version. The
+   * version is listed once for all files.
+   *
+   * @param linked
+   * @param report
+   * @param console
+   */
+  private void verify(List<Pending> linked, UploadReport report, ConsoleLogger console) {
+    if (linked.isEmpty()) {
+      return;
+    }
+
+    List<Redmine.ProjectFile> files;
+    try {
+      files = retry.execute("Listing the version", count -> redmine.listVersionFiles(console), console);
+    } catch (IOException e) {
+      console.error(String.format("Couldn't verify the uploaded files: %s", e.getMessage()));
+      linked.forEach(upload -> report.success(upload.path, upload.target, null, upload.upload.digest));
+      return;
+    }
+
+    for (Pending upload : linked) {
+      FileDigest digest = upload.upload.digest;
+      Redmine.ProjectFile file = UploadEngine.find(files, upload.target, digest);
+      if (file == null) {
+        report.failure(upload.path, upload.target, new IOException("File is missing in the version"));
+      } else if (digest != null && (file.filesize != digest.getSize()
+          || (digest.canVerify(file.digest) && !digest.matches(file.digest)))) {
+        report.failure(upload.path, upload.target,
+            new IOException(String.format("Digest mismatch, Redmine reports %s", file.digest)));
+      } else {
+        report.success(upload.path, upload.target, file.id, digest);
+      }
+    }
+  }
+
+  /**
+   * Finds the file of the name, that matches the size and digest of the upload. Without a match the
+   * newest file of the name is returned, or <code>null</code> if the version has none.
+   *
+   * @param files
+   * @param name
+   * @param digest
+   */
+  private static Redmine.ProjectFile find(List<Redmine.ProjectFile> files, String name, FileDigest digest) {
+    Redmine.ProjectFile match = null;
+    Redmine.ProjectFile newest = null;
+    for (Redmine.ProjectFile file : files) {
+      if (name.equals(file.filename)) {
+        newest = Redmine.newest(newest, file);
+        if (digest != null && file.filesize == digest.getSize()
+            && (!digest.canVerify(file.digest) || digest.matches(file.digest))) {
+          match = Redmine.newest(match, file);
+        }
+      }
+    }
+    return (match == null) ? newest : match;
+  }
+
+  /**
+   * Returns <code>true</code> if the version contains the uploaded file, with the same size and
+   * digest. Older files of the same name are ignored, unless their content is identical.
+   *
+   * @param upload
+   * @param console
+   */
+  private boolean isLinked(Pending upload, ConsoleLogger console) throws IOException {
+    FileDigest digest = upload.upload.digest;
+    Redmine.ProjectFile file = UploadEngine.find(redmine.listVersionFiles(console), upload.target, digest);
+    return file != null && digest != null && file.filesize == digest.getSize() && digest.matches(file.digest);
+  }
+
+  /**
+   * Gets the digest of the local file, if the existing file of the version has the same size and
+   * digest. The local digest is only calculated if the size matches.
+   *
+   * @param match
+   * @param existing
+   */
+  private static FileDigest getUnchanged(PathMapper match, Redmine.ProjectFile existing) throws IOException {
+    long size = match.toFile().length();
+    if (existing == null || existing.filesize != size) {
+      return null;
+    }
+    String algorithm = Digests.algorithmOf(existing.digest);
+    if (algorithm == null) {
+      return null;
+    }
+    String digest = Digests.compute(match.toFile().toPath(), algorithm);
+    if (!digest.equalsIgnoreCase(existing.digest.trim())) {
+      return null;
+    }
+    return Digests.MD5.equals(algorithm) ? new FileDigest(size, digest, null) : new FileDigest(size, null, digest);
+  }
+
+  /**
+   * Acquires the permits, to wait for a free or all workers of the upload stage.
+   *
+   * @param permits
+   * @param count
+   */
+  private static void acquire(Semaphore permits, int count) throws IOException {
+    try {
+      permits.acquire(count);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Upload has been interrupted", e);
+    }
+  }
+
+  /**
+   * Waits until all tasks of a stage are done.
+   *
+   * @param futures
+   */
+  private static void await(List<Future<?>> futures) throws IOException {
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Upload has been interrupted", e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Creates a daemon worker thread, so that a hanging upload never blocks the shutdown of the
+   * agent.
+   *
+   * @param runnable
+   */
+  private static Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "redmine-upload-" + THREAD_COUNT.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * The {@link Pending} is an uploaded file, waiting to be linked to the version.
+   */
+  private static class Pending {
+
+    private final Path                     path;
+    private final String                   target;
+    private final Redmine.AttachmentUpload upload;
+
+    /**
+     * Constructs an instance of {@link Pending}.
+     *
+     * @param path
+     * @param target
+     * @param upload
+     */
+    private Pending(Path path, String target, Redmine.AttachmentUpload upload) {
+      this.path = path;
+      this.target = target;
+      this.upload = upload;
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link UploadReport} collects the results of the files uploaded by a single publish.
+ */
+public class UploadReport {
+
+  private final List<Result> results = Collections.synchronizedList(new ArrayList<>());
+
+  /**
+   * Adds a successful upload.
+   *
+   * @param path
+   * @param target
+   * @param id the attachment id, or <code>null</code> if unknown
+   * @param digest
+   */
+  final void success(Path path, String target, String id, FileDigest digest) {
+    results.add(new Result(path, target, false, id, digest, null));
+  }
+
+  /**
+   * Adds a file, that hasn't been uploaded because the version already contains an identical
+   * file.
+   *
+   * @param path
+   * @param target
+   * @param id
+   * @param digest
+   */
+  final void skipped(Path path, String target, String id, FileDigest digest) {
+    results.add(new Result(path, target, true, id, digest, null));
+  }
+
+  /**
+   * Adds a failed upload.
+   *
+   * @param path
+   * @param target
+   * @param error
+   */
+  final void failure(Path path, String target, Throwable error) {
+    results.add(new Result(path, target, false, null, null, error));
+  }
+
+  /**
+   * Gets all results.
+   */
+  public final List<Result> getResults() {
+    synchronized (results) {
+      return new ArrayList<>(results);
+    }
+  }
+
+  /**
+   * Gets the failed results.
+   */
+  public final List<Result> getFailures() {
+    return getResults().stream().filter(r -> !r.isSuccess()).collect(Collectors.toList());
+  }
+
+  /**
+   * Gets the attachment ids, size and digests of the published files, by target name.
+   */
+  public final Map<String, Object> getDigests() {
+    Map<String, Object> digests = new TreeMap<>();
+    for (Result result : getResults()) {
+      if (result.isSuccess() && result.getDigest() != null) {
+        digests.put(result.getTarget(), new PublishedFile(result.getId(), result.getDigest()).toMap());
+      }
+    }
+    return digests;
+  }
+
+  /**
+   * Returns <code>true</code> if at least one file couldn't be uploaded.
+   */
+  public final boolean hasFailures() {
+    return !getFailures().isEmpty();
+  }
+
+  /**
+   * Returns a short summary of the report.
+   */
+  @Override
+  public String toString() {
+    List<Result> all = getResults();
+    long failed = all.stream().filter(r -> !r.isSuccess()).count();
+    long skipped = all.stream().filter(r -> r.isSkipped()).count();
+    return String.format("%d file(s) uploaded, %d unchanged, %d failed", all.size() - failed - skipped, skipped,
+        failed);
+  }
+
+  /**
+   * The {@link Result} of a single file.
+   */
+  public static class Result {
+
+    private final Path       path;
+    private final String     target;
+    private final boolean    skipped;
+    private final String     id;
+    private final FileDigest digest;
+    private final Throwable  error;
+
+    /**
+     * Constructs an instance of {@link Result}.
+     *
+     * @param path
+     * @param target
+     * @param skipped
+     * @param id
+     * @param digest
+     * @param error
+     */
+    private Result(Path path, String target, boolean skipped, String id, FileDigest digest, Throwable error) {
+      this.path = path;
+      this.target = target;
+      this.skipped = skipped;
+      this.id = id;
+      this.digest = digest;
+      this.error = error;
+    }
+
+    /**
+     * Gets the {@link #path}.
+     */
+    public final Path getPath() {
+      return path;
+    }
+
+    /**
+     * Gets the {@link #target}.
+     */
+    public final String getTarget() {
+      return target;
+    }
+
+    /**
+     * Gets the {@link #id} of the attachment, or <code>null</code> if unknown.
+     */
+    public final String getId() {
+      return id;
+    }
+
+    /**
+     * Gets the {@link #digest}, or <code>null</code> if unknown.
+     */
+    public final FileDigest getDigest() {
+      return digest;
+    }
+
+    /**
+     * Gets the {@link #error}.
+     */
+    public final Throwable getError() {
+      return error;
+    }
+
+    /**
+     * Returns <code>true</code> if the upload was skipped, because the file was unchanged.
+     */
+    public final boolean isSkipped() {
+      return skipped;
+    }
+
+    /**
+     * Returns <code>true</code> if the file has been uploaded.
+     */
+    public final boolean isSuccess() {
+      return error == null;
+    }
+
+    /**
+     * Returns a readable representation of the result.
+     */
+    @Override
+    public String toString() {
+      return isSuccess() ? String.format("%s -> %s", path, target)
+          : String.format("%s -> %s: %s", path, target, error.getMessage());
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The {@link ArtifactCacheTest} checks that the cache survives a damaged index, evicts the least
+ * recently used files and never hands out a modified file.
+ */
+public class ArtifactCacheTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path          directory;
+  private Path          workingDir;
+  private ArtifactCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.newFolder("cache").toPath();
+    workingDir = folder.newFolder("work").toPath();
+    cache = new ArtifactCache(directory, 30);
+  }
+
+  @Test
+  public void testFetchStored() throws IOException {
+    Redmine.ProjectFile file = store("1", "a.bin", 10);
+
+    Path target = workingDir.resolve("fetched/a.bin");
+    assertTrue(cache.fetch(file, null, target));
+    assertArrayEquals(ArtifactCacheTest.content("1", 10), Files.readAllBytes(target));
+    assertFalse(cache.fetch(ArtifactCacheTest.file("2", "b.bin", 10), null, workingDir.resolve("b.bin")));
+  }
+
+  @Test
+  public void testReadOnly() throws IOException {
+    assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    Redmine.ProjectFile file = store("1", "a.bin", 10);
+    Path target = workingDir.resolve("fetched.bin");
+    assertTrue(cache.fetch(file, null, target));
+
+    for (Path path : Arrays.asList(directory.resolve(ArtifactCacheTest.key(file)), workingDir.resolve("a.bin"), target)) {
+      assertFalse(path.toString(), Files.getPosixFilePermissions(path).contains(PosixFilePermission.OWNER_WRITE));
+      assertFalse(path.toString(), Files.getPosixFilePermissions(path).contains(PosixFilePermission.OTHERS_WRITE));
+    }
+  }
+
+  @Test
+  public void testModifiedEntry() throws IOException {
+    Redmine.ProjectFile file = store("1", "a.bin", 10);
+    Path cached = directory.resolve(ArtifactCacheTest.key(file));
+    cached.toFile().setWritable(true);
+    Files.write(cached, ArtifactCacheTest.content("x", 10));
+    Files.setLastModifiedTime(cached, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+
+    assertFalse(cache.fetch(file, null, workingDir.resolve("fetched.bin")));
+    assertFalse(Files.exists(workingDir.resolve("fetched.bin")));
+    assertFalse(Files.exists(cached));
+    assertFalse(ArtifactCacheTest.index(directory).contains(ArtifactCacheTest.key(file)));
+  }
+
+  @Test
+  public void testUnreadableIndex() throws IOException {
+    for (String index : Arrays.asList("{\"entries\":[{\"key\":\"1-ab", "garbage", "", "{\"entries\":null}")) {
+      Redmine.ProjectFile file = store("1", "a.bin", 10);
+      Files.write(directory.resolve("index.json"), index.getBytes(StandardCharsets.UTF_8));
+
+      // The entries of the damaged index are unknown, their files are removed by the next store
+      assertFalse(index, cache.fetch(file, null, workingDir.resolve("fetched.bin")));
+      Redmine.ProjectFile other = store("2", "b.bin", 10);
+      assertFalse(index, Files.exists(directory.resolve(ArtifactCacheTest.key(file))));
+      assertTrue(index, cache.fetch(other, null, workingDir.resolve("fetched.bin")));
+      ArtifactCacheTest.clear(directory);
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    Redmine.ProjectFile a = store("1", "a.bin", 10);
+    Redmine.ProjectFile b = store("2", "b.bin", 10);
+    Redmine.ProjectFile c = store("3", "c.bin", 10);
+    assertTrue(cache.fetch(a, null, workingDir.resolve("fetched.bin")));
+
+    // The least recently used file is evicted first
+    Redmine.ProjectFile d = store("4", "d.bin", 10);
+    assertEquals(ArtifactCacheTest.keys(a, c, d), ArtifactCacheTest.files(directory));
+    Redmine.ProjectFile e = store("5", "e.bin", 20);
+    assertEquals(ArtifactCacheTest.keys(d, e), ArtifactCacheTest.files(directory));
+
+    // A file larger than the cache isn't stored
+    store("6", "f.bin", 31);
+    assertEquals(ArtifactCacheTest.keys(d, e), ArtifactCacheTest.files(directory));
+    assertFalse(cache.fetch(b, null, workingDir.resolve("fetched.bin")));
+  }
+
+  @Test
+  public void testTemporaryFiles() throws IOException {
+    Path expired = Files.write(directory.resolve(".tmp-expired"), new byte[1]);
+    Files.setLastModifiedTime(expired, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+    Path recent = Files.write(directory.resolve(".tmp-recent"), new byte[1]);
+    Path unknown = Files.write(directory.resolve("9-unknown"), new byte[1]);
+
+    Redmine.ProjectFile file = store("1", "a.bin", 10);
+    assertFalse(Files.exists(expired));
+    assertTrue(Files.exists(recent));
+    assertFalse(Files.exists(unknown));
+    assertEquals(Arrays.asList(".tmp-recent", ArtifactCacheTest.key(file)), ArtifactCacheTest.files(directory));
+  }
+
+  /**
+   * Writes a file to the working directory and stores it in the cache.
+   *
+   * @param id
+   * @param name
+   * @param size
+   */
+  private Redmine.ProjectFile store(String id, String name, int size) throws IOException {
+    Path target = workingDir.resolve(name);
+    Files.deleteIfExists(target);
+    Files.write(target, ArtifactCacheTest.content(id, size));
+    Redmine.ProjectFile file = ArtifactCacheTest.file(id, name, size);
+    cache.store(file, null, target);
+    return file;
+  }
+
+  /**
+   * Creates a project file with a digest derived from the id.
+   *
+   * @param id
+   * @param name
+   * @param size
+   */
+  private static Redmine.ProjectFile file(String id, String name, long size) {
+    Redmine.ProjectFile file = new Redmine.ProjectFile();
+    file.id = id;
+    file.filename = name;
+    file.filesize = size;
+    file.digest = "d" + id;
+    return file;
+  }
+
+  /**
+   * Creates the content of a file.
+   *
+   * @param id
+   * @param size
+   */
+  private static byte[] content(String id, int size) {
+    byte[] content = new byte[size];
+    Arrays.fill(content, id.getBytes(StandardCharsets.UTF_8)[0]);
+    return content;
+  }
+
+  /**
+   * Gets the key of the file in the cache.
+   *
+   * @param file
+   */
+  private static String key(Redmine.ProjectFile file) {
+    return file.id + "-" + file.digest;
+  }
+
+  /**
+   * Gets the sorted keys of the files.
+   *
+   * @param files
+   */
+  private static List<String> keys(Redmine.ProjectFile... files) {
+    return Stream.of(files).map(ArtifactCacheTest::key).sorted().collect(Collectors.toList());
+  }
+
+  /**
+   * Gets the sorted names of the content files of the cache, without the index and lock.
+   *
+   * @param directory
+   */
+  private static List<String> files(Path directory) throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream.map(p -> p.getFileName().toString()).filter(n -> !n.startsWith("index."))
+          .sorted().collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Reads the index of the cache.
+   *
+   * @param directory
+   */
+  private static String index(Path directory) throws IOException {
+    Path index = directory.resolve("index.json");
+    return Files.exists(index) ? new String(Files.readAllBytes(index), StandardCharsets.UTF_8) : "";
+  }
+
+  /**
+   * Removes all files of the cache.
+   *
+   * @param directory
+   */
+  private static void clear(Path directory) throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      for (Path path : stream.collect(Collectors.toList())) {
+        Files.delete(path);
+      }
+    }
+    Files.write(directory.resolve("index.json"), Collections.<String> emptyList());
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@link DestinationTemplateTest} pins the rendering of destinations. Templates the former
+ * PathParser supported render the same text.
+ */
+public class DestinationTemplateTest {
+
+  private static final String[] VALUES = {"a", "b", "c", "d", "e", "f", "g", "h", "i", "j"};
+
+  @Test
+  public void testMatchesPathParser() {
+    Groups groups = DestinationTemplateTest.groups("app", "1.0", "jar");
+    for (String destination : Arrays.asList("", "plain.txt", "$1", "$1-$2.$3", "dist/$1/$1-$2.$3", "$3$2$1",
+        "cost $ 5", "end$")) {
+      assertEquals(destination, DestinationTemplateTest.legacy(destination, Arrays.asList("app", "1.0", "jar")),
+          DestinationTemplate.compile(destination).render(groups));
+    }
+  }
+
+  @Test
+  public void testNumberedGroups() {
+    Groups groups = DestinationTemplateTest.groups(VALUES);
+    assertEquals("j", DestinationTemplate.compile("$10").render(groups));
+    assertEquals("a0", DestinationTemplate.compile("${1}0").render(groups));
+    assertEquals("j-a", DestinationTemplate.compile("${10}-$1").render(groups));
+    assertEquals("$1", DestinationTemplate.compile("$$1").render(groups));
+    assertEquals("$a", DestinationTemplate.compile("$$$1").render(groups));
+    assertEquals("a$", DestinationTemplate.compile("$1$").render(groups));
+  }
+
+  @Test
+  public void testLiteralZero() {
+    Groups groups = DestinationTemplateTest.groups("x");
+    assertEquals("$0", DestinationTemplate.compile("$0").render(groups));
+    assertEquals("$01", DestinationTemplate.compile("$01").render(groups));
+    assertEquals("a$0bx", DestinationTemplate.compile("a$0b$1").render(groups));
+    assertEquals("$0", DestinationTemplate.compile("$$0").render(groups));
+  }
+
+  @Test
+  public void testNamedGroups() {
+    Groups groups = Groups.EMPTY.append(new String[] {"libs", "app"}, new String[] {"kind", null})
+        .append(new String[] {"1.0"}, new String[] {"version"});
+    assertEquals("libs/app-1.0", DestinationTemplate.compile("${kind}/$2-${version}").render(groups));
+    assertEquals("1.0", DestinationTemplate.compile("$3").render(groups));
+    DestinationTemplateTest.assertInvalid("${name}", groups, "`name`");
+  }
+
+  @Test
+  public void testNullGroup() {
+    Groups groups = DestinationTemplateTest.groups("app", null, "jar");
+    assertEquals("app.jar", DestinationTemplate.compile("app$2.$3").render(groups));
+    assertEquals("", DestinationTemplate.compile("${2}").render(groups));
+    assertEquals("", DestinationTemplate.compile(null).render(groups));
+  }
+
+  @Test
+  public void testOutOfRange() {
+    DestinationTemplateTest.assertInvalid("$2", DestinationTemplateTest.groups("a"), "group 2");
+    DestinationTemplateTest.assertInvalid("$10", DestinationTemplateTest.groups("a", "b"), "group 10");
+    DestinationTemplateTest.assertInvalid("${1}", Groups.EMPTY, "group 1");
+  }
+
+  @Test
+  public void testInvalidTemplates() {
+    for (String destination : Arrays.asList("${1", "a${", "${1a}", "${0}", "${}", "${a-b}")) {
+      try {
+        DestinationTemplate.compile(destination);
+        fail(destination);
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains(destination));
+      }
+    }
+  }
+
+  @Test
+  public void testVerify() {
+    DestinationTemplate template = DestinationTemplate.compile("${kind}/$2");
+    template.verify(Arrays.asList("kind", null));
+    for (List<String> groupNames : Arrays.asList(Arrays.asList("kind"), Arrays.asList("name", null))) {
+      try {
+        template.verify(groupNames);
+        fail(groupNames.toString());
+      } catch (IllegalArgumentException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("${kind}/$2"));
+      }
+    }
+  }
+
+  /**
+   * Asserts that the rendering of the destination fails with a message containing the text.
+   *
+   * @param destination
+   * @param groups
+   * @param text
+   */
+  private static void assertInvalid(String destination, Groups groups, String text) {
+    try {
+      DestinationTemplate.compile(destination).render(groups);
+      fail(destination);
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(text));
+    }
+  }
+
+  /**
+   * Creates the unnamed groups of a single segment.
+   *
+   * @param values
+   */
+  private static Groups groups(String... values) {
+    return Groups.EMPTY.append(values, new String[values.length]);
+  }
+
+  /**
+   * Replaces the groups like the former PathParser.
+   *
+   * @param target
+   * @param groups
+   */
+  private static String legacy(String target, List<String> groups) {
+    for (int index = 0; index < groups.size(); index++) {
+      target = target.replace("$" + (index + 1), groups.get(index));
+    }
+    return target;
+  }
+}
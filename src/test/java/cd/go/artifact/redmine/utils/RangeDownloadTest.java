@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.thoughtworks.go.plugin.api.GoApplicationAccessor;
+import com.thoughtworks.go.plugin.api.request.GoApiRequest;
+import com.thoughtworks.go.plugin.api.response.DefaultGoApiResponse;
+import com.thoughtworks.go.plugin.api.response.GoApiResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import cd.go.artifact.redmine.ConsoleLogger;
+
+/**
+ * The {@link RangeDownloadTest} downloads files in ranges from a local HTTP stub, that can ignore
+ * ranges or fail the ranges beyond an offset.
+ */
+public class RangeDownloadTest {
+
+  private static final Pattern RANGE      = Pattern.compile("bytes=(\\d+)-(\\d+)");
+  private static final int     RANGE_SIZE = 1000;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<Long> requests = Collections.synchronizedList(new ArrayList<>());
+
+  private HttpServer    server;
+  private ConsoleLogger console;
+  private byte[]        content;
+  private boolean       ranges;
+  private long          failFrom;
+  private Path          target;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 16);
+    server.createContext("/", this::handle);
+    server.start();
+    console = ConsoleLogger.getLogger(new GoApplicationAccessor() {
+
+      @Override
+      public GoApiResponse submit(GoApiRequest request) {
+        return DefaultGoApiResponse.success(null);
+      }
+    });
+    content = RangeDownloadTest.content(10 * RANGE_SIZE + 500, 1);
+    ranges = true;
+    failFrom = Long.MAX_VALUE;
+    target = folder.getRoot().toPath().resolve("file.bin");
+  }
+
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testDownload() throws IOException {
+    Redmine.ProjectFile file = file("1");
+    FileDigest digest = download(4, RANGE_SIZE, file, null);
+
+    assertEquals(content.length, digest.getSize());
+    assertArrayEquals(content, Files.readAllBytes(target));
+    assertEquals(RangeDownloadTest.starts(0, 11), sortedRequests());
+    assertFalse(Files.exists(part()));
+    assertFalse(Files.exists(bitmap()));
+  }
+
+  @Test
+  public void testResume() throws IOException {
+    Redmine.ProjectFile file = file("1");
+    interrupt(file, 5 * RANGE_SIZE);
+    assertTrue(Files.exists(part()));
+    assertTrue(Files.exists(bitmap()));
+
+    // Only the missing ranges are fetched
+    failFrom = Long.MAX_VALUE;
+    requests.clear();
+    download(4, RANGE_SIZE, file, null);
+    assertArrayEquals(content, Files.readAllBytes(target));
+    assertEquals(RangeDownloadTest.starts(5, 11), sortedRequests());
+    assertFalse(Files.exists(bitmap()));
+  }
+
+  @Test
+  public void testDiscardState() throws IOException {
+    byte[] original = content;
+    for (String change : Arrays.asList("id", "size", "rangeSize", "digest", "bitmap")) {
+      content = original;
+      Files.deleteIfExists(target);
+      Redmine.ProjectFile file = file("1");
+      interrupt(file, 5 * RANGE_SIZE);
+
+      // The state of another file is discarded, the download starts over
+      long rangeSize = RANGE_SIZE;
+      if (change.equals("id")) {
+        file.id = "2";
+      } else if (change.equals("size")) {
+        content = Arrays.copyOf(original, original.length + 100);
+        file = file("1");
+      } else if (change.equals("rangeSize")) {
+        rangeSize = 2 * RANGE_SIZE;
+      } else if (change.equals("digest")) {
+        content = RangeDownloadTest.content(original.length, 2);
+        file = file("1");
+      } else {
+        Files.write(bitmap(), "{\"id\":".getBytes());
+      }
+      failFrom = Long.MAX_VALUE;
+      requests.clear();
+      download(4, rangeSize, file, null);
+      assertArrayEquals(change, content, Files.readAllBytes(target));
+      assertTrue(change, requests.contains(0L));
+      assertEquals(change, content.length / rangeSize + 1, requests.size());
+    }
+  }
+
+  @Test
+  public void testFullAnswer() throws IOException {
+    ranges = false;
+    download(4, RANGE_SIZE, file("1"), null);
+
+    // The whole file is sent for the first range, no further range is requested
+    assertArrayEquals(content, Files.readAllBytes(target));
+    assertEquals(Collections.singletonList(0L), requests);
+    assertFalse(Files.exists(bitmap()));
+  }
+
+  @Test
+  public void testDigestMismatch() throws IOException {
+    Redmine.ProjectFile file = file("1");
+    FileDigest expected = new FileDigest(content.length, null, Digests.toHex(new byte[32]));
+    try {
+      download(4, RANGE_SIZE, file, expected);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("Digest mismatch"));
+    }
+    assertFalse(Files.exists(target));
+    assertFalse(Files.exists(part()));
+    assertFalse(Files.exists(bitmap()));
+  }
+
+  /**
+   * Downloads the file to the target.
+   *
+   * @param threads
+   * @param rangeSize
+   * @param file
+   * @param expected
+   */
+  private FileDigest download(int threads, long rangeSize, Redmine.ProjectFile file, FileDigest expected)
+      throws IOException {
+    String url = String.format("http://127.0.0.1:%d", server.getAddress().getPort());
+    Redmine redmine = new Redmine(new RedmineTransport(4, 5000, 5000), url, "key", "project", "1");
+    RangeDownload download = new RangeDownload(redmine, new RetryPolicy(1, 0, 0), threads, rangeSize);
+    return download.download(file, url + "/file.bin", target, expected, console);
+  }
+
+  /**
+   * Interrupts a download of a single thread at the offset, the ranges before are complete.
+   *
+   * @param file
+   * @param offset
+   */
+  private void interrupt(Redmine.ProjectFile file, long offset) {
+    failFrom = offset;
+    try {
+      download(1, RANGE_SIZE, file, null);
+      fail();
+    } catch (IOException e) {
+      assertFalse(Files.exists(target));
+    }
+  }
+
+  /**
+   * Answers a request with the requested range of the content, or the whole content.
+   *
+   * @param exchange
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    Matcher matcher = RANGE.matcher((range == null) ? "" : range);
+    long start = matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    long end = matcher.matches() ? Long.parseLong(matcher.group(2)) : content.length - 1;
+    requests.add(start);
+    try (OutputStream output = exchange.getResponseBody()) {
+      if (start >= failFrom) {
+        exchange.sendResponseHeaders(404, -1);
+      } else if (ranges && matcher.matches()) {
+        exchange.sendResponseHeaders(206, end - start + 1);
+        output.write(content, (int) start, (int) (end - start + 1));
+      } else {
+        exchange.sendResponseHeaders(200, content.length);
+        output.write(content);
+      }
+    }
+  }
+
+  /**
+   * Creates a file of the content, Redmine reports the SHA-256 digest.
+   *
+   * @param id
+   */
+  private Redmine.ProjectFile file(String id) {
+    Redmine.ProjectFile file = new Redmine.ProjectFile();
+    file.id = id;
+    file.filename = "file.bin";
+    file.filesize = content.length;
+    file.digest = Digests.toHex(Digests.create(Digests.SHA256).digest(content));
+    return file;
+  }
+
+  private Path part() {
+    return target.resolveSibling(".file.bin.part");
+  }
+
+  private Path bitmap() {
+    return target.resolveSibling(".file.bin.ranges");
+  }
+
+  private List<Long> sortedRequests() {
+    return requests.stream().sorted().collect(Collectors.toList());
+  }
+
+  /**
+   * Gets the start offsets of the ranges.
+   *
+   * @param from
+   * @param to
+   */
+  private static List<Long> starts(int from, int to) {
+    return IntStream.range(from, to).mapToObj(range -> (long) range * RANGE_SIZE).collect(Collectors.toList());
+  }
+
+  /**
+   * Creates random content.
+   *
+   * @param size
+   * @param seed
+   */
+  private static byte[] content(int size, long seed) {
+    byte[] content = new byte[size];
+    new Random(seed).nextBytes(content);
+    return content;
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2001-2019 Territorium Online Srl / TOL GmbH. All Rights Reserved.
+ *
+ * This file contains Original Code and/or Modifications of Original Code as defined in and that are
+ * subject to the Territorium Online License Version 1.0. You may not use this file except in
+ * compliance with the License. Please obtain a copy of the License at http://www.tol.info/license/
+ * and read it before using this file.
+ *
+ * The Original Code and all software distributed under the License are distributed on an 'AS IS'
+ * basis, WITHOUT WARRANTY OF ANY KIND, EITHER EXPRESS OR IMPLIED, AND TERRITORIUM ONLINE HEREBY
+ * DISCLAIMS ALL SUCH WARRANTIES, INCLUDING WITHOUT LIMITATION, ANY WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE, QUIET ENJOYMENT OR NON-INFRINGEMENT. Please see the License for
+ * the specific language governing rights and limitations under the License.
+ */
+
+package cd.go.artifact.redmine.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The {@link SourceMatcherTest} pins the matching of source patterns. The matches of a single
+ * pattern are compared with the walk of the former PathParser.
+ */
+public class SourceMatcherTest {
+
+  private static final String[] FILES = {"build/libs/app-1.0.jar", "build/libs/app-1.0-sources.jar",
+      "build/libs/lib-2.1.jar", "build/docs/readme.txt", "build/docs/a,b.txt", "dist/app.zip", "dist/sub/app.zip",
+      "dist/sub/notes.txt"};
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    root = folder.getRoot().toPath();
+    for (String file : FILES) {
+      Path path = root.resolve(file);
+      Files.createDirectories(path.getParent());
+      Files.createFile(path);
+    }
+  }
+
+  @Test
+  public void testMatchesPathParser() {
+    for (String pattern : Arrays.asList("build/libs/(.%)\\.jar", "build/(.%)/(.%)\\.(jar|txt)", "dist/app\\.zip",
+        "(.%)/(.%)", "%.%/sub/.%", "build/libs/app-([0-9.]+)(-sources)?\\.jar", "missing/.%")) {
+      List<String> expected = SourceMatcherTest.legacy(root, pattern);
+      List<String> actual = SourceMatcherTest.toStrings(SourceMatcher.compile(pattern, null).list(root));
+      Collections.sort(expected);
+      assertEquals(pattern, expected, actual);
+    }
+  }
+
+  @Test
+  public void testSplit() {
+    assertEquals(Collections.emptyList(), SourceMatcher.split(null));
+    assertEquals(Collections.emptyList(), SourceMatcher.split(" , "));
+    assertEquals(Arrays.asList("a/(x|y)", "b/[,]c", "c\\,d", "e/.{1,3}", "(f,g)"),
+        SourceMatcher.split("a/(x|y), b/[,]c ,,c\\,d,e/.{1,3},(f,g)"));
+  }
+
+  @Test
+  public void testSeveralPatterns() {
+    SourceMatcher matcher = SourceMatcher.compile("dist/(sub)/(.%)\\.zip, dist/(.%)/app\\.zip, build/docs/a\\,b\\.txt", null);
+    assertEquals(Arrays.asList("build/docs/a,b.txt=[]", "dist/sub/app.zip=[sub, app]"),
+        SourceMatcherTest.toStrings(matcher.list(root)));
+  }
+
+  @Test
+  public void testExcludes() {
+    assertEquals(Arrays.asList("build/libs/app-1.0.jar=[app-1.0]", "build/libs/lib-2.1.jar=[lib-2.1]"),
+        SourceMatcherTest.toStrings(SourceMatcher.compile("build/libs/(.%)\\.jar", "build/libs/.%-sources\\.jar").list(root)));
+    assertEquals(Arrays.asList("dist/app.zip=[app.zip]"),
+        SourceMatcherTest.toStrings(SourceMatcher.compile("dist/(.%)", "dist/sub").list(root)));
+    assertEquals(Arrays.asList("build/docs/a,b.txt", "build/docs/readme.txt"),
+        SourceMatcherTest.toPaths(SourceMatcher.compile("%.%/%.%/%.%", "build/libs, dist").list(root)));
+  }
+
+  @Test
+  public void testLiteralSegments() {
+    assertEquals(Arrays.asList("dist/sub/app.zip=[app]", "dist/sub/notes.txt=[notes]"),
+        SourceMatcherTest.toStrings(SourceMatcher.compile("dist/sub/(.%)\\..%", null).list(root)));
+    assertEquals(Collections.emptyList(), SourceMatcher.compile("dist/missing/(.%)", null).list(root));
+    assertEquals(Arrays.asList("build/docs/readme.txt"),
+        SourceMatcherTest.toPaths(SourceMatcher.compile("build/docs/readme.txt", null).list(root)));
+  }
+
+  @Test
+  public void testParallelWalk() {
+    for (String pattern : Arrays.asList("(.%)/(.%)/(.%)", "%.%/sub/.%", "build/libs/(.%)\\.jar")) {
+      List<String> sequential = SourceMatcherTest.toStrings(
+          new SourceMatcher(Collections.singletonList(pattern), Collections.singletonList("dist/sub/notes\\.txt"), 1)
+              .list(root));
+      List<String> parallel = SourceMatcherTest.toStrings(
+          new SourceMatcher(Collections.singletonList(pattern), Collections.singletonList("dist/sub/notes\\.txt"), 4)
+              .list(root));
+      assertEquals(pattern, sequential, parallel);
+
+      List<String> iterated = new ArrayList<>();
+      new SourceMatcher(Collections.singletonList(pattern), Collections.singletonList("dist/sub/notes\\.txt"), 1)
+          .iterator(root).forEachRemaining(match -> iterated.add(SourceMatcherTest.toString(match)));
+      assertEquals(pattern, sequential, iterated);
+    }
+  }
+
+  @Test
+  public void testNamedGroups() {
+    SourceMatcher matcher = SourceMatcher.compile("build/(?<kind>.%)/(?<name>[^-]+)-(.%)\\.jar", null);
+    matcher.verify(DestinationTemplate.compile("${kind}/${name}-$3.jar"));
+    SourceMatcherTest.assertInvalid(matcher, "${version}");
+    SourceMatcherTest.assertInvalid(matcher, "$4");
+
+    // A parenthesis within a character class or quoted is no group
+    SourceMatcher quoted = SourceMatcher.compile("dist/[(]?\\Q(\\E?(?<name>.%)\\.zip", null);
+    quoted.verify(DestinationTemplate.compile("${name}-$1"));
+    SourceMatcherTest.assertInvalid(quoted, "$2");
+  }
+
+  /**
+   * Asserts that the destination refers to a group, the matcher doesn't capture.
+   *
+   * @param matcher
+   * @param destination
+   */
+  private static void assertInvalid(SourceMatcher matcher, String destination) {
+    try {
+      matcher.verify(DestinationTemplate.compile(destination));
+      fail(destination);
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(destination.replaceAll("[${}]", "")));
+    }
+  }
+
+  /**
+   * Gets the matches as path with the groups, separated by <code>/</code>.
+   *
+   * @param matches
+   */
+  private static List<String> toStrings(List<PathMapper> matches) {
+    List<String> values = new ArrayList<>();
+    matches.forEach(match -> values.add(SourceMatcherTest.toString(match)));
+    return values;
+  }
+
+  /**
+   * Gets the paths of the matches, separated by <code>/</code>.
+   *
+   * @param matches
+   */
+  private static List<String> toPaths(List<PathMapper> matches) {
+    List<String> values = new ArrayList<>();
+    matches.forEach(match -> values.add(match.getPath().toString().replace(File.separatorChar, '/')));
+    return values;
+  }
+
+  /**
+   * Gets the path of a match with its groups.
+   *
+   * @param match
+   */
+  private static String toString(PathMapper match) {
+    List<String> groups = new ArrayList<>();
+    for (int index = 0; index < match.getGroups().size(); index++) {
+      groups.add(match.getGroups().get(index));
+    }
+    return match.getPath().toString().replace(File.separatorChar, '/') + "=" + groups;
+  }
+
+  /**
+   * Walks the directory like the former PathParser: each segment is matched against the entries of
+   * its directory, the groups are collected from the first to the last segment.
+   *
+   * @param root
+   * @param pattern
+   */
+  private static List<String> legacy(Path root, String pattern) {
+    List<String> matches = new ArrayList<>();
+    SourceMatcherTest.legacy(root, Paths.get(pattern), 0, Paths.get(""), new ArrayList<>(), matches);
+    return matches;
+  }
+
+  private static void legacy(Path root, Path pattern, int offset, Path relative, List<String> groups,
+      List<String> matches) {
+    Pattern segment = Pattern.compile("^" + pattern.getName(offset).toString().replace('%', '*') + "$");
+    File[] files = root.resolve(relative).toFile().listFiles((dir, name) -> segment.matcher(name).find());
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      List<String> values = new ArrayList<>(groups);
+      Matcher matcher = segment.matcher(file.getName());
+      if (matcher.find()) {
+        for (int index = 0; index < matcher.groupCount(); index++) {
+          values.add(matcher.group(index + 1));
+        }
+      }
+      Path path = relative.resolve(file.getName());
+      if (offset + 1 >= pattern.getNameCount()) {
+        matches.add(path.toString().replace(File.separatorChar, '/') + "=" + values);
+      } else if (file.isDirectory()) {
+        SourceMatcherTest.legacy(root, pattern, offset + 1, path, values, matches);
+      }
+    }
+  }
+}